@@ -0,0 +1,52 @@
+/*******************************************************************************
+ * Copyright (c) 2009 Mateusz Matela.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Mateusz Matela - initial API and implementation
+ *******************************************************************************/
+package org.matela.eclipsemmbscroller.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.matela.eclipsemmbscroller.ScrollToolGeometry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measures building of the scroll tool's picture, alpha mask and outline for
+ * the default radius and for the sizes used on high resolution displays.
+ * 
+ * @author Mateusz Matela
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ScrollToolGeometryBenchmark {
+
+	@Param( { "12", "24", "64" })
+	private int radius;
+
+	@Benchmark
+	public int[] pixels() {
+		return ScrollToolGeometry.createPixels(radius);
+	}
+
+	@Benchmark
+	public byte[] circleAlpha() {
+		return ScrollToolGeometry.createCircleAlpha(radius);
+	}
+
+	@Benchmark
+	public int[] circlePolygon() {
+		return ScrollToolGeometry.createCirclePolygon(radius);
+	}
+}
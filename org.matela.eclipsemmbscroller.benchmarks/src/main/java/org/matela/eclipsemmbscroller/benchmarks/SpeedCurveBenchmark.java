@@ -0,0 +1,107 @@
+/*******************************************************************************
+ * Copyright (c) 2009 Mateusz Matela.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Mateusz Matela - initial API and implementation
+ *******************************************************************************/
+package org.matela.eclipsemmbscroller.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.matela.eclipsemmbscroller.AccelerationProfile;
+import org.matela.eclipsemmbscroller.ScrollSpeedCurve;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures the computation the scrolling engine does in every frame: mapping
+ * the distance of the cursor to a speed and the speed to a frame interval.
+ * The cursor sweeps through distances from -{@link #SWEEP} to {@link #SWEEP}
+ * pixels, so that every branch of the curves is hit.
+ * 
+ * @author Mateusz Matela
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class SpeedCurveBenchmark {
+
+	private static final int SWEEP = 600;
+
+	private static final int DEAD_ZONE = 12;
+
+	private AccelerationProfile quadratic;
+
+	private AccelerationProfile custom;
+
+	private int distance;
+
+	@Setup
+	public void setUp() {
+		quadratic = new AccelerationProfile(AccelerationProfile.QUADRATIC,
+				100, null);
+		custom = new AccelerationProfile(AccelerationProfile.CUSTOM, 100,
+				"0:0, 50:100, 200:2000");
+	}
+
+	private int nextDistance() {
+		distance = distance >= SWEEP ? -SWEEP : distance + 1;
+		return distance;
+	}
+
+	/**
+	 * The speed computed directly from the curve's formula
+	 */
+	@Benchmark
+	public double curveSpeed() {
+		return ScrollSpeedCurve.getSpeed(nextDistance(), DEAD_ZONE);
+	}
+
+	/**
+	 * The speed looked up in a precomputed acceleration profile
+	 */
+	@Benchmark
+	public double quadraticProfileSpeed() {
+		return quadratic.getSpeed(nextDistance(), DEAD_ZONE);
+	}
+
+	@Benchmark
+	public double customProfileSpeed() {
+		return custom.getSpeed(nextDistance(), DEAD_ZONE);
+	}
+
+	/**
+	 * Everything a frame computes from the cursor location: speeds in both
+	 * directions, the interval of the variable interval mode and the turbo
+	 * check
+	 */
+	@Benchmark
+	public void frame(Blackhole blackhole) {
+		int d = nextDistance();
+		double verticalSpeed = quadratic.getSpeed(d, DEAD_ZONE);
+		double horizontalSpeed = quadratic.getSpeed(d / 4, DEAD_ZONE);
+		blackhole.consume(ScrollSpeedCurve.getInterval(verticalSpeed,
+				horizontalSpeed));
+		blackhole.consume(ScrollSpeedCurve.isTurboSpeed(verticalSpeed / 16));
+	}
+
+	/**
+	 * Building the lookup table when preferences change
+	 */
+	@Benchmark
+	@OutputTimeUnit(TimeUnit.MICROSECONDS)
+	public AccelerationProfile buildProfile() {
+		return new AccelerationProfile(AccelerationProfile.EXPONENTIAL, 100,
+				null);
+	}
+}
@@ -0,0 +1,207 @@
+/*******************************************************************************
+ * Copyright (c) 2009 Mateusz Matela.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Mateusz Matela - initial API and implementation
+ *******************************************************************************/
+package org.matela.eclipsemmbscroller;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import org.eclipse.jface.text.Document;
+import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.TextAttribute;
+import org.eclipse.jface.text.presentation.IPresentationReconciler;
+import org.eclipse.jface.text.presentation.PresentationReconciler;
+import org.eclipse.jface.text.rules.DefaultDamagerRepairer;
+import org.eclipse.jface.text.rules.RuleBasedScanner;
+import org.eclipse.jface.text.rules.Token;
+import org.eclipse.jface.text.source.ISourceViewer;
+import org.eclipse.jface.text.source.SourceViewer;
+import org.eclipse.jface.text.source.SourceViewerConfiguration;
+import org.eclipse.jface.text.source.VerticalRuler;
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.custom.StyledText;
+import org.eclipse.swt.layout.FillLayout;
+import org.eclipse.swt.widgets.Display;
+import org.eclipse.swt.widgets.Shell;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.matela.eclipsemmbscroller.replay.AllocationCounter;
+
+/**
+ * Checks that the work the scroller does for a text viewer in every steady
+ * frame, on top of the engine's tick and the widget's own scrolling and
+ * painting, allocates no memory. Requires a display.
+ * 
+ * @author Mateusz Matela
+ */
+public class FrameAllocationTest {
+
+	private static final int FRAMES = 20000;
+
+	private static final int LINE_COUNT = 5000;
+
+	/**
+	 * Speed (in pixels per millisecond) fast enough to suspend rulers
+	 */
+	private static final double SPEED = 3;
+
+	/**
+	 * Speed (in pixels per millisecond) slow enough to restore rulers
+	 */
+	private static final double SLOW_SPEED = 0.5;
+
+	/**
+	 * Number of frames after which the speed changes between
+	 * {@link #SPEED} and {@link #SLOW_SPEED}
+	 */
+	private static final int SPEED_PERIOD = 10;
+
+	private AllocationCounter counter;
+
+	private Display display;
+
+	private Shell shell;
+
+	private SourceViewer viewer;
+
+	private SourceViewerConfiguration configuration;
+
+	private StyledText widget;
+
+	@Before
+	public void setUp() {
+		counter = new AllocationCounter();
+		assumeTrue(counter.isSupported());
+		display = Display.getDefault();
+		shell = new Shell(display);
+		shell.setLayout(new FillLayout());
+		viewer = new SourceViewer(shell, new VerticalRuler(12), SWT.V_SCROLL
+				| SWT.H_SCROLL);
+		configuration = new SourceViewerConfiguration() {
+			public IPresentationReconciler getPresentationReconciler(
+					ISourceViewer sourceViewer) {
+				RuleBasedScanner scanner = new RuleBasedScanner();
+				scanner.setDefaultReturnToken(new Token(new TextAttribute(
+						display.getSystemColor(SWT.COLOR_BLUE))));
+				DefaultDamagerRepairer damagerRepairer = new DefaultDamagerRepairer(
+						scanner);
+				PresentationReconciler reconciler = new PresentationReconciler();
+				reconciler.setDamager(damagerRepairer,
+						IDocument.DEFAULT_CONTENT_TYPE);
+				reconciler.setRepairer(damagerRepairer,
+						IDocument.DEFAULT_CONTENT_TYPE);
+				return reconciler;
+			}
+		};
+		viewer.configure(configuration);
+		StringBuffer text = new StringBuffer();
+		for (int i = 0; i < LINE_COUNT; i++)
+			text.append("line ").append(i).append('\n');
+		viewer.setDocument(new Document(text.toString()));
+		widget = viewer.getTextWidget();
+		shell.setSize(600, 400);
+		shell.open();
+		dispatchEvents();
+	}
+
+	@After
+	public void tearDown() {
+		if (shell != null)
+			shell.dispose();
+	}
+
+	/**
+	 * Scrolls down one line per frame, changing the speed so that the rulers
+	 * are suspended and restored again and again, and runs every chunk the
+	 * warmer schedules. Repairing a line creates its presentation, which is
+	 * the purpose of warming, so the whole document is warmed up first. The
+	 * measured chunks then go over repaired lines and check the warmer's own
+	 * work. The widget's scrolling and event dispatching are not measured.
+	 */
+	@Test
+	public void testWarmerAndSuspender() {
+		PresentationWarmer warmer = new PresentationWarmer(display);
+		DecorationSuspender suspender = new DecorationSuspender();
+		warmer.start(viewer, configuration);
+		for (int top = 0; top < LINE_COUNT; top += 10) {
+			widget.setTopIndex(top);
+			warmer.scrolled(SPEED);
+			dispatchEvents();
+		}
+		warmer.stop();
+		widget.setTopIndex(0);
+		dispatchEvents();
+
+		warmer.start(viewer, configuration);
+		suspender.start(viewer);
+		/* the look-ahead must stay within the document */
+		int frames = LINE_COUNT / 2;
+		int chunks = 0, suspensions = 0, restorations = 0;
+		long allocated = 0;
+		for (int i = 0; i < frames; i++) {
+			double speed = i / SPEED_PERIOD % 2 == 0 ? SPEED : SLOW_SPEED;
+			boolean suspended = suspender.isSuspended();
+
+			long start = counter.read();
+			warmer.scrolled(speed);
+			suspender.scrolled(speed);
+			boolean pending = warmer.isPending();
+			if (pending)
+				warmer.run();
+			allocated += counter.since(start);
+
+			if (pending)
+				chunks++;
+			if (!suspended && suspender.isSuspended())
+				suspensions++;
+			if (suspended && !suspender.isSuspended())
+				restorations++;
+			widget.setTopIndex(i + 1);
+			dispatchEvents();
+		}
+		warmer.stop();
+		suspender.stop();
+		/* at the high speed the look-ahead grows with every frame */
+		assertTrue(chunks >= frames / 4);
+		assertTrue(suspensions >= frames / SPEED_PERIOD / 2 - 1);
+		assertTrue(restorations >= frames / SPEED_PERIOD / 2 - 1);
+		assertEquals(0, allocated);
+	}
+
+	@Test
+	public void testLineOffsetIndex() {
+		LineOffsetIndex index = LineOffsetIndex.get(widget);
+		int clientHeight = widget.getClientArea().height;
+		for (int i = 0; i < 100; i++)
+			measure(index, clientHeight);
+
+		long start = counter.read();
+		for (int i = 0; i < FRAMES; i++)
+			measure(index, clientHeight);
+		long allocated = counter.since(start);
+		assertEquals(0, allocated);
+	}
+
+	/**
+	 * Does what {@link StyledTextTarget} does with the index in a frame
+	 */
+	private void measure(LineOffsetIndex index, int clientHeight) {
+		index.measureVisibleLines(clientHeight);
+		int top = widget.getTopIndex();
+		index.getLine(index.getOffset(top) + widget.getLineHeight() / 2);
+	}
+
+	private void dispatchEvents() {
+		while (display.readAndDispatch())
+			;
+	}
+}
@@ -0,0 +1,123 @@
+/*******************************************************************************
+ * Copyright (c) 2009 Mateusz Matela.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Mateusz Matela - initial API and implementation
+ *******************************************************************************/
+package org.matela.eclipsemmbscroller;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Checks {@link LineHeights} against a plain array of heights after random
+ * changes.
+ * 
+ * @author Mateusz Matela
+ */
+public class LineHeightsTest {
+
+	private static final int DEFAULT_HEIGHT = 15;
+
+	/**
+	 * The expected heights, in the first {@link #lineCount} elements
+	 */
+	private int[] expected = new int[0];
+
+	private int lineCount;
+
+	@Test
+	public void testUniform() {
+		LineHeights heights = new LineHeights(1000, DEFAULT_HEIGHT);
+		assertTrue(heights.isUniform());
+		assertEquals(1000 * DEFAULT_HEIGHT, heights.getTotalHeight());
+		assertEquals(500 * DEFAULT_HEIGHT, heights.getOffset(500));
+		assertEquals(500, heights.getLine(500 * DEFAULT_HEIGHT));
+		assertEquals(500, heights.getLine(501 * DEFAULT_HEIGHT - 1));
+		assertEquals(0, heights.getLine(-1));
+		assertEquals(999, heights.getLine(Integer.MAX_VALUE));
+	}
+
+	@Test
+	public void testMeasuredHeightsKept() {
+		LineHeights heights = new LineHeights(1000, DEFAULT_HEIGHT);
+		heights.setHeight(900, 40);
+		assertFalse(heights.isUniform());
+		heights.replaceLines(10, 0, 5);
+		assertEquals(40, heights.getHeight(905));
+		heights.replaceLines(10, 20, 0);
+		assertEquals(40, heights.getHeight(885));
+		assertEquals(885 * DEFAULT_HEIGHT, heights.getOffset(885));
+		assertEquals(885, heights.getLine(885 * DEFAULT_HEIGHT + 39));
+
+		/* replacing the measured line makes the heights uniform again */
+		heights.replaceLines(885, 1, 1);
+		assertTrue(heights.isUniform());
+	}
+
+	@Test
+	public void testRandomChanges() {
+		Random random = new Random(1);
+		LineHeights heights = new LineHeights(0, DEFAULT_HEIGHT);
+		for (int i = 0; i < 5000; i++) {
+			int start = random.nextInt(lineCount + 1);
+			switch (random.nextInt(2)) {
+			case 0:
+				if (lineCount > 0) {
+					int line = random.nextInt(lineCount);
+					int height = DEFAULT_HEIGHT * (1 + random.nextInt(3));
+					heights.setHeight(line, height);
+					expected[line] = height;
+				}
+				break;
+			default:
+				/* big changes overflow blocks and empty them */
+				int removed = random.nextInt(Math.min(lineCount - start,
+						random.nextBoolean() ? 3 : 300) + 1);
+				int inserted = random.nextInt(random.nextBoolean() ? 3 : 400);
+				heights.replaceLines(start, removed, inserted);
+				replace(start, removed, inserted);
+			}
+			check(heights, random);
+		}
+	}
+
+	private void replace(int start, int removed, int inserted) {
+		int[] replaced = new int[lineCount - removed + inserted];
+		System.arraycopy(expected, 0, replaced, 0, start);
+		for (int i = 0; i < inserted; i++)
+			replaced[start + i] = DEFAULT_HEIGHT;
+		System.arraycopy(expected, start + removed, replaced, start
+				+ inserted, lineCount - start - removed);
+		expected = replaced;
+		lineCount = replaced.length;
+	}
+
+	private void check(LineHeights heights, Random random) {
+		assertEquals(lineCount, heights.getLineCount());
+		int offset = 0;
+		boolean uniform = true;
+		for (int line = 0; line < lineCount; line++) {
+			if (line % 7 == 0 || random.nextInt(10) == 0) {
+				assertEquals(expected[line], heights.getHeight(line));
+				assertEquals(offset, heights.getOffset(line));
+				assertEquals(line, heights.getLine(offset));
+				assertEquals(line, heights.getLine(offset + expected[line]
+						- 1));
+			}
+			offset += expected[line];
+			uniform &= expected[line] == DEFAULT_HEIGHT;
+		}
+		assertEquals(offset, heights.getTotalHeight());
+		assertEquals(uniform, heights.isUniform());
+	}
+}
@@ -0,0 +1,151 @@
+/*******************************************************************************
+ * Copyright (c) 2009 Mateusz Matela.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Mateusz Matela - initial API and implementation
+ *******************************************************************************/
+package org.matela.eclipsemmbscroller;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.custom.StyledText;
+import org.eclipse.swt.layout.FillLayout;
+import org.eclipse.swt.widgets.Display;
+import org.eclipse.swt.widgets.Shell;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Checks {@link LineOffsetIndex} against the line positions reported by a
+ * real {@link StyledText}. Requires a display.
+ * 
+ * @author Mateusz Matela
+ */
+public class LineOffsetIndexTest {
+
+	private static final int LINE_COUNT = 1000;
+
+	private Shell shell;
+
+	private StyledText widget;
+
+	private int clientHeight;
+
+	@Before
+	public void setUp() {
+		shell = new Shell(Display.getDefault());
+		shell.setLayout(new FillLayout());
+		widget = new StyledText(shell, SWT.MULTI | SWT.V_SCROLL);
+		widget.setText(createText(LINE_COUNT));
+		shell.setSize(400, 300);
+		shell.open();
+		clientHeight = widget.getClientArea().height;
+	}
+
+	@After
+	public void tearDown() {
+		if (shell != null)
+			shell.dispose();
+	}
+
+	@Test
+	public void testUniformLines() {
+		LineOffsetIndex index = LineOffsetIndex.get(widget);
+		int lineHeight = widget.getLineHeight();
+		assertTrue(index.measureVisibleLines(clientHeight));
+		assertEquals(LINE_COUNT, index.getLineCount());
+		assertEquals(LINE_COUNT * lineHeight, index.getTotalHeight());
+		for (int line = 0; line < LINE_COUNT; line += 37) {
+			assertEquals(line * lineHeight, index.getOffset(line));
+			assertEquals(line, index.getLine(line * lineHeight));
+			assertEquals(line, index.getLine(line * lineHeight + lineHeight
+					- 1));
+		}
+		assertEquals(LINE_COUNT - 1, index.getLine(Integer.MAX_VALUE));
+	}
+
+	@Test
+	public void testVerticalIndents() {
+		for (int line = 1; line < 10; line += 2)
+			widget.setLineVerticalIndent(line, 20);
+		LineOffsetIndex index = LineOffsetIndex.get(widget);
+		assertFalse(index.measureVisibleLines(clientHeight));
+
+		int lineHeight = widget.getLineHeight();
+		for (int line = 0; line < 10; line++) {
+			int offset = widget.getLinePixel(line) - widget.getLinePixel(0);
+			assertEquals(offset, index.getOffset(line));
+			assertEquals(line, index.getLine(offset));
+		}
+		/* lines that haven't been shown have the default height */
+		int last = LINE_COUNT - 1;
+		assertEquals(index.getOffset(last) + lineHeight, index
+				.getTotalHeight());
+		assertEquals(last, index.getLine(index.getOffset(last)));
+	}
+
+	@Test
+	public void testModifiedText() {
+		LineOffsetIndex index = LineOffsetIndex.get(widget);
+		index.measureVisibleLines(clientHeight);
+		widget.setText(createText(LINE_COUNT / 2));
+		assertEquals(LINE_COUNT / 2, index.getLineCount());
+		assertEquals(LINE_COUNT / 2 * widget.getLineHeight(), index
+				.getTotalHeight());
+	}
+
+	/**
+	 * Lines inserted and removed below the measured ones don't change their
+	 * heights, and the index follows the line count without a rebuild
+	 */
+	@Test
+	public void testEditedText() {
+		for (int line = 1; line < 10; line += 2)
+			widget.setLineVerticalIndent(line, 20);
+		LineOffsetIndex index = LineOffsetIndex.get(widget);
+		index.measureVisibleLines(clientHeight);
+		int offset = index.getOffset(10);
+		int totalHeight = index.getTotalHeight();
+		int lineHeight = widget.getLineHeight();
+
+		widget.replaceTextRange(widget.getOffsetAtLine(500), 0, "a\nb\n");
+		assertEquals(LINE_COUNT + 2, index.getLineCount());
+		assertEquals(offset, index.getOffset(10));
+		assertEquals(totalHeight + 2 * lineHeight, index.getTotalHeight());
+
+		int start = widget.getOffsetAtLine(600);
+		widget.replaceTextRange(start, widget.getOffsetAtLine(610) - start,
+				"");
+		assertEquals(LINE_COUNT - 8, index.getLineCount());
+		assertEquals(offset, index.getOffset(10));
+		assertEquals(totalHeight - 8 * lineHeight, index.getTotalHeight());
+	}
+
+	@Test
+	public void testRemove() {
+		LineOffsetIndex index = LineOffsetIndex.get(widget);
+		assertSame(index, LineOffsetIndex.get(widget));
+		LineOffsetIndex.remove(widget);
+		assertNotSame(index, LineOffsetIndex.get(widget));
+	}
+
+	private static String createText(int lineCount) {
+		StringBuffer text = new StringBuffer();
+		for (int i = 0; i < lineCount; i++) {
+			if (i > 0)
+				text.append('\n');
+			text.append("line ").append(i);
+		}
+		return text.toString();
+	}
+}
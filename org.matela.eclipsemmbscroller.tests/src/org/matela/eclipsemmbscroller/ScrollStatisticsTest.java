@@ -0,0 +1,59 @@
+/*******************************************************************************
+ * Copyright (c) 2009 Mateusz Matela.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Mateusz Matela - initial API and implementation
+ *******************************************************************************/
+package org.matela.eclipsemmbscroller;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.matela.eclipsemmbscroller.replay.CursorTrajectory;
+import org.matela.eclipsemmbscroller.replay.ScrollReplay;
+
+/**
+ * Checks the frame statistics collected while replaying scrolling with a
+ * virtual clock, in which every frame is executed exactly when scheduled.
+ * 
+ * @author Mateusz Matela
+ */
+public class ScrollStatisticsTest {
+
+	private ScrollStatistics statistics;
+
+	@Before
+	public void setUp() {
+		statistics = ScrollStatistics.enable(false);
+	}
+
+	@After
+	public void tearDown() {
+		ScrollStatistics.disable();
+	}
+
+	/**
+	 * The cursor starts in the dead zone and leaves it, so the engine parks
+	 * and is woken up. The frame executed by the wake-up must not count as
+	 * a late or coalesced frame. Variable interval is used, as in the fixed
+	 * rate mode intervals are rounded to whole milliseconds.
+	 */
+	@Test
+	public void testNoJitterAfterWake() {
+		ScrollReplay replay = new ScrollReplay();
+		replay.run(CursorTrajectory.createSwing(150, 1000, 2000));
+
+		assertTrue(statistics.getFrameCount() > 0);
+		assertEquals(statistics.getFrameCount(), statistics
+				.getFrameJitterHistogram()[0]);
+		assertEquals(0, statistics.getCoalescedFrames());
+		assertEquals(0, statistics.getMaxQueueDelay());
+	}
+}
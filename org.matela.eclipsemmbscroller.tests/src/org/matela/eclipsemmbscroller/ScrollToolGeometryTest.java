@@ -0,0 +1,45 @@
+/*******************************************************************************
+ * Copyright (c) 2009 Mateusz Matela.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Mateusz Matela - initial API and implementation
+ *******************************************************************************/
+package org.matela.eclipsemmbscroller;
+
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Checks the scroll tool's picture against its alpha mask.
+ * 
+ * @author Mateusz Matela
+ */
+public class ScrollToolGeometryTest {
+
+	private static final int[] RADII = new int[] { 4, 12, 13, 24, 64 };
+
+	/**
+	 * Every opaque pixel must be painted, otherwise it shows as a black dot
+	 * at the edge of the tool
+	 */
+	@Test
+	public void testOpaquePixelsPainted() {
+		for (int i = 0; i < RADII.length; i++) {
+			int r = RADII[i];
+			int size = 2 * r;
+			int[] pixels = ScrollToolGeometry.createPixels(r);
+			byte[] alpha = ScrollToolGeometry.createCircleAlpha(r);
+			for (int y = 0; y < size; y++)
+				for (int x = 0; x < size; x++) {
+					int p = y * size + x;
+					assertTrue("radius " + r + ", pixel " + x + ", " + y,
+							alpha[p] == 0 || pixels[p] != 0);
+				}
+		}
+	}
+}
@@ -0,0 +1,260 @@
+/*******************************************************************************
+ * Copyright (c) 2009 Mateusz Matela.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Mateusz Matela - initial API and implementation
+ *******************************************************************************/
+package org.matela.eclipsemmbscroller;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.ref.WeakReference;
+
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.custom.StyledText;
+import org.eclipse.swt.events.ControlEvent;
+import org.eclipse.swt.events.ControlListener;
+import org.eclipse.swt.events.DisposeEvent;
+import org.eclipse.swt.events.DisposeListener;
+import org.eclipse.swt.events.FocusEvent;
+import org.eclipse.swt.events.FocusListener;
+import org.eclipse.swt.layout.FillLayout;
+import org.eclipse.swt.widgets.Composite;
+import org.eclipse.swt.widgets.Control;
+import org.eclipse.swt.widgets.Display;
+import org.eclipse.swt.widgets.Event;
+import org.eclipse.swt.widgets.Listener;
+import org.eclipse.swt.widgets.Shell;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Soak test of {@link WidgetRegistry}: opens and closes many editor-like
+ * composites in a long-living window and checks that neither the registry
+ * nor the window's listeners grow and that closed widgets can be garbage
+ * collected. Requires a display. {@link #testAddAndRemoveControls()} also
+ * requires the plug-in to be started, so it must run as a plug-in test.
+ * 
+ * @author Mateusz Matela
+ */
+public class WidgetRegistryTest {
+
+	private static final int EDITOR_COUNT = 5000;
+
+	/**
+	 * Listens to the registered widgets the way the scroller does. Disposal
+	 * of a widget unregisters it, unless the listener is "lost".
+	 */
+	private class Listeners implements Listener, FocusListener,
+			DisposeListener, ControlListener {
+
+		private final boolean lost;
+
+		public Listeners(boolean lost) {
+			this.lost = lost;
+		}
+
+		public void handleEvent(Event event) {
+			// ignore
+		}
+
+		public void focusGained(FocusEvent e) {
+			// ignore
+		}
+
+		public void focusLost(FocusEvent e) {
+			// ignore
+		}
+
+		public void widgetDisposed(DisposeEvent e) {
+			if (lost)
+				return;
+			if (registry.contains(e.widget))
+				registry.remove((Control) e.widget);
+			else if (registry.containsShell(e.widget))
+				registry.removeShell((Shell) e.widget);
+		}
+
+		public void controlMoved(ControlEvent e) {
+			// ignore
+		}
+
+		public void controlResized(ControlEvent e) {
+			// ignore
+		}
+	}
+
+	private Display display;
+
+	private Shell shell;
+
+	private WidgetRegistry registry;
+
+	@Before
+	public void setUp() {
+		display = Display.getDefault();
+		shell = new Shell(display);
+		shell.setLayout(new FillLayout());
+	}
+
+	@After
+	public void tearDown() {
+		if (registry != null)
+			registry.clear();
+		if (shell != null)
+			shell.dispose();
+	}
+
+	@Test
+	public void testOpenAndCloseEditors() {
+		createRegistry(false);
+		StyledText permanent = openEditor();
+		registry.add(permanent);
+		int[] shellListeners = countListeners(shell);
+		int[] widgetListeners = countListeners(permanent);
+
+		WeakReference[] closed = new WeakReference[EDITOR_COUNT];
+		for (int i = 0; i < EDITOR_COUNT; i++) {
+			StyledText text = openEditor();
+			registry.add(text);
+			assertEquals(2, registry.getWidgetCount());
+			text.getParent().dispose();
+			closed[i] = new WeakReference(text);
+		}
+
+		assertEquals(1, registry.getWidgetCount());
+		assertEquals(1, registry.getShellCount());
+		assertListeners(shellListeners, countListeners(shell));
+		assertListeners(widgetListeners, countListeners(permanent));
+		assertCollected(closed);
+
+		registry.remove(permanent);
+		assertEquals(0, registry.getShellCount());
+	}
+
+	@Test
+	public void testLostDisposeListener() {
+		createRegistry(true);
+		WeakReference[] closed = new WeakReference[EDITOR_COUNT];
+		for (int i = 0; i < EDITOR_COUNT; i++) {
+			StyledText text = openEditor();
+			registry.add(text);
+			assertTrue(registry
+					.getWidgetCount() <= WidgetRegistry.MIN_PURGE_THRESHOLD);
+			text.getParent().dispose();
+			closed[i] = new WeakReference(text);
+		}
+
+		registry.purge();
+		assertEquals(0, registry.getWidgetCount());
+		assertEquals(0, registry.getShellCount());
+		assertCollected(closed);
+	}
+
+	@Test
+	public void testClosedWindows() {
+		createRegistry(false);
+		for (int i = 0; i < EDITOR_COUNT / 10; i++) {
+			Shell window = new Shell(shell);
+			window.setLayout(new FillLayout());
+			registry.add(new StyledText(window, SWT.MULTI));
+			registry.add(new StyledText(window, SWT.MULTI));
+			window.dispose();
+		}
+		assertEquals(0, registry.getWidgetCount());
+		assertEquals(0, registry.getShellCount());
+	}
+
+	/**
+	 * Opens and closes editors through {@link StyledTextScroller}, the way the
+	 * plug-in does, and checks that its per-display state doesn't grow.
+	 */
+	@Test
+	public void testAddAndRemoveControls() {
+		StyledText permanent = openEditor();
+		StyledTextScroller.addControl(permanent);
+		int scrolledDisplays = StyledTextScroller.getScrolledDisplayCount();
+		int hookedDisplays = StyledTextScroller.getHookedDisplayCount();
+		int[] shellListeners = countListeners(shell);
+
+		WeakReference[] closed = new WeakReference[EDITOR_COUNT];
+		for (int i = 0; i < EDITOR_COUNT; i++) {
+			StyledText text = openEditor();
+			StyledTextScroller.addControl(text);
+			if (i % 2 == 0)
+				StyledTextScroller.removeControl(text);
+			text.getParent().dispose();
+			closed[i] = new WeakReference(text);
+			assertEquals(scrolledDisplays, StyledTextScroller
+					.getScrolledDisplayCount());
+			assertEquals(hookedDisplays, StyledTextScroller
+					.getHookedDisplayCount());
+		}
+		assertListeners(shellListeners, countListeners(shell));
+		assertCollected(closed);
+
+		/* the last widget disposes the scroller, the display stays hooked */
+		StyledTextScroller.removeControl(permanent);
+		assertEquals(scrolledDisplays - 1, StyledTextScroller
+				.getScrolledDisplayCount());
+		for (int i = 0; i < EDITOR_COUNT; i++) {
+			StyledText text = openEditor();
+			StyledTextScroller.addControl(text);
+			StyledTextScroller.removeControl(text);
+			text.getParent().dispose();
+		}
+		assertEquals(scrolledDisplays - 1, StyledTextScroller
+				.getScrolledDisplayCount());
+		assertEquals(hookedDisplays, StyledTextScroller
+				.getHookedDisplayCount());
+	}
+
+	private void createRegistry(boolean lostDisposeListener) {
+		Listeners listeners = new Listeners(lostDisposeListener);
+		registry = new WidgetRegistry(listeners, listeners, listeners,
+				listeners);
+	}
+
+	private StyledText openEditor() {
+		Composite editor = new Composite(shell, SWT.NONE);
+		editor.setLayout(new FillLayout());
+		StyledText text = new StyledText(editor, SWT.MULTI | SWT.V_SCROLL);
+		text.setText("line\nline\nline");
+		shell.layout();
+		return text;
+	}
+
+	private static int[] countListeners(Control control) {
+		int[] types = new int[] { SWT.MouseDown, SWT.FocusIn, SWT.FocusOut,
+				SWT.Dispose, SWT.Move, SWT.Resize };
+		int[] result = new int[types.length];
+		for (int i = 0; i < types.length; i++)
+			result[i] = control.getListeners(types[i]).length;
+		return result;
+	}
+
+	private static void assertListeners(int[] expected, int[] actual) {
+		for (int i = 0; i < expected.length; i++)
+			assertEquals(expected[i], actual[i]);
+	}
+
+	private void assertCollected(WeakReference[] references) {
+		for (int attempt = 0; attempt < 10; attempt++) {
+			while (display.readAndDispatch())
+				;
+			System.gc();
+			if (references[references.length - 1].get() == null)
+				break;
+		}
+		for (int i = 0; i < references.length; i++)
+			assertNull("closed editor " + i + " is still reachable",
+					references[i].get());
+	}
+}
@@ -0,0 +1,94 @@
+/*******************************************************************************
+ * Copyright (c) 2009 Mateusz Matela.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Mateusz Matela - initial API and implementation
+ *******************************************************************************/
+package org.matela.eclipsemmbscroller.replay;
+
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Method;
+
+/**
+ * Counts bytes allocated by the current thread. It uses
+ * <code>com.sun.management.ThreadMXBean</code>, which isn't available in
+ * every virtual machine, so it's accessed through reflection. Reading the
+ * counter allocates a little by itself; that overhead is measured once and
+ * subtracted.
+ * 
+ * @author Mateusz Matela
+ */
+public class AllocationCounter {
+
+	private final Object bean = ManagementFactory.getThreadMXBean();
+
+	private final Method allocatedBytes;
+
+	private final Object[] threadId;
+
+	private long overhead;
+
+	public AllocationCounter() {
+		Method method;
+		try {
+			method = Class.forName("com.sun.management.ThreadMXBean")
+					.getMethod("getThreadAllocatedBytes",
+							new Class[] { long.class });
+			method.invoke(bean, new Object[] { new Long(Thread
+					.currentThread().getId()) });
+		} catch (Exception e) {
+			method = null;
+		}
+		allocatedBytes = method;
+		threadId = new Object[] { new Long(Thread.currentThread().getId()) };
+		if (isSupported()) {
+			overhead = Long.MAX_VALUE;
+			for (int i = 0; i < 20; i++) {
+				long before = read();
+				overhead = Math.min(overhead, read() - before);
+			}
+		}
+	}
+
+	/**
+	 * 
+	 * @return true if the virtual machine can count allocated bytes
+	 */
+	public boolean isSupported() {
+		return allocatedBytes != null;
+	}
+
+	/**
+	 * 
+	 * @return the number of bytes allocated by the current thread so far, or
+	 *         -1 if it can't be counted
+	 */
+	public long read() {
+		if (allocatedBytes == null)
+			return -1;
+		try {
+			return ((Long) allocatedBytes.invoke(bean, threadId)).longValue();
+		} catch (Exception e) {
+			return -1;
+		}
+	}
+
+	/**
+	 * 
+	 * @param start
+	 *            the value returned by {@link #read()} before the measured
+	 *            code
+	 * @return the number of bytes allocated by the measured code, or -1 if it
+	 *         can't be counted
+	 */
+	public long since(long start) {
+		long now = read();
+		if (start < 0 || now < 0)
+			return -1;
+		return Math.max(0, now - start - overhead);
+	}
+}
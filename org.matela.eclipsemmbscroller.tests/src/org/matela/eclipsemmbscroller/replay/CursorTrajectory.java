@@ -0,0 +1,203 @@
+/*******************************************************************************
+ * Copyright (c) 2009 Mateusz Matela.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Mateusz Matela - initial API and implementation
+ *******************************************************************************/
+package org.matela.eclipsemmbscroller.replay;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.StringTokenizer;
+
+import org.matela.eclipsemmbscroller.CursorSource;
+import org.matela.eclipsemmbscroller.FrameClock;
+
+/**
+ * Recorded or synthetic movement of the mouse cursor during one scrolling
+ * session. The location between recorded points is interpolated linearly.
+ * The session starts at the time of the first point, where the middle button
+ * is pressed, and ends at the time of the last point, where it's released.
+ * 
+ * @author Mateusz Matela
+ */
+public class CursorTrajectory implements CursorSource {
+
+	private final long[] times;
+
+	private final int[] xs;
+
+	private final int[] ys;
+
+	private FrameClock clock;
+
+	/**
+	 * 
+	 * @param times
+	 *            increasing times (in milliseconds) of the points
+	 * @param xs
+	 *            horizontal locations of the cursor at the points
+	 * @param ys
+	 *            vertical locations of the cursor at the points
+	 */
+	public CursorTrajectory(long[] times, int[] xs, int[] ys) {
+		if (times.length == 0 || times.length != xs.length
+				|| times.length != ys.length)
+			throw new IllegalArgumentException(
+					"Trajectory needs the same, non zero number of times and locations");
+		this.times = times;
+		this.xs = xs;
+		this.ys = ys;
+	}
+
+	/**
+	 * Reads a trajectory recorded as lines of three numbers: time in
+	 * milliseconds and horizontal and vertical location of the cursor. Empty
+	 * lines and lines starting with <code>#</code> are skipped.
+	 * 
+	 * @param reader
+	 *            the reader to read from
+	 * @return the trajectory
+	 * @throws IOException
+	 *             if reading fails or a line is malformed
+	 */
+	public static CursorTrajectory read(Reader reader) throws IOException {
+		BufferedReader in = new BufferedReader(reader);
+		ArrayList points = new ArrayList();
+		String line;
+		while ((line = in.readLine()) != null) {
+			line = line.trim();
+			if (line.length() == 0 || line.startsWith("#"))
+				continue;
+			StringTokenizer tokenizer = new StringTokenizer(line, " \t,;");
+			if (tokenizer.countTokens() != 3)
+				throw new IOException("Malformed trajectory point: " + line);
+			try {
+				points.add(new long[] { Long.parseLong(tokenizer.nextToken()),
+						Long.parseLong(tokenizer.nextToken()),
+						Long.parseLong(tokenizer.nextToken()) });
+			} catch (NumberFormatException e) {
+				throw new IOException("Malformed trajectory point: " + line);
+			}
+		}
+		long[] times = new long[points.size()];
+		int[] xs = new int[times.length];
+		int[] ys = new int[times.length];
+		for (int i = 0; i < times.length; i++) {
+			long[] point = (long[]) points.get(i);
+			times[i] = point[0];
+			xs[i] = (int) point[1];
+			ys[i] = (int) point[2];
+		}
+		return new CursorTrajectory(times, xs, ys);
+	}
+
+	/**
+	 * Creates a synthetic vertical trajectory: the cursor moves away from the
+	 * starting point with constant speed, stays still for a while and then
+	 * returns, also with constant speed.
+	 * 
+	 * @param distance
+	 *            the furthest distance (in pixels) of the cursor from the
+	 *            starting point, negative for scrolling up
+	 * @param moveTime
+	 *            duration (in milliseconds) of moving away and of returning
+	 * @param holdTime
+	 *            duration (in milliseconds) of staying at the furthest point
+	 * @return the trajectory
+	 */
+	public static CursorTrajectory createSwing(int distance, int moveTime,
+			int holdTime) {
+		return new CursorTrajectory(new long[] { 0, moveTime,
+				moveTime + holdTime, 2 * moveTime + holdTime }, new int[] { 0,
+				0, 0, 0 }, new int[] { 0, distance, distance, 0 });
+	}
+
+	/**
+	 * Creates a synthetic vertical flick: the cursor moves away from the
+	 * starting point with constant speed and the button is released as soon
+	 * as it stops.
+	 * 
+	 * @param distance
+	 *            the distance (in pixels) of the cursor from the starting
+	 *            point at the release, negative for scrolling up
+	 * @param moveTime
+	 *            duration (in milliseconds) of the movement
+	 * @return the trajectory
+	 */
+	public static CursorTrajectory createFlick(int distance, int moveTime) {
+		return new CursorTrajectory(new long[] { 0, moveTime }, new int[] { 0,
+				0 }, new int[] { 0, distance });
+	}
+
+	/**
+	 * 
+	 * @param clock
+	 *            the clock deciding which point of the trajectory is current
+	 */
+	public void setClock(FrameClock clock) {
+		this.clock = clock;
+	}
+
+	public void getLocation(int[] location) {
+		long time = clock.currentTimeMillis();
+		location[0] = getX(time);
+		location[1] = getY(time);
+	}
+
+	/**
+	 * 
+	 * @param time
+	 *            time in milliseconds
+	 * @return horizontal location of the cursor at given time
+	 */
+	public int getX(long time) {
+		return interpolate(xs, time);
+	}
+
+	/**
+	 * 
+	 * @param time
+	 *            time in milliseconds
+	 * @return vertical location of the cursor at given time
+	 */
+	public int getY(long time) {
+		return interpolate(ys, time);
+	}
+
+	/**
+	 * 
+	 * @return the time (in milliseconds) when the middle button is pressed
+	 */
+	public long getStartTime() {
+		return times[0];
+	}
+
+	/**
+	 * 
+	 * @return the time (in milliseconds) when the middle button is released
+	 */
+	public long getReleaseTime() {
+		return times[times.length - 1];
+	}
+
+	private int interpolate(int[] values, long time) {
+		if (time <= times[0])
+			return values[0];
+		for (int i = 1; i < times.length; i++) {
+			if (time < times[i]) {
+				return values[i - 1]
+						+ (int) Math.round((double) (values[i] - values[i - 1])
+								* (time - times[i - 1])
+								/ (times[i] - times[i - 1]));
+			}
+		}
+		return values[values.length - 1];
+	}
+}
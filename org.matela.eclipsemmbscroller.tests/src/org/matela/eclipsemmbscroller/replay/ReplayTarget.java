@@ -0,0 +1,105 @@
+/*******************************************************************************
+ * Copyright (c) 2009 Mateusz Matela.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Mateusz Matela - initial API and implementation
+ *******************************************************************************/
+package org.matela.eclipsemmbscroller.replay;
+
+import org.matela.eclipsemmbscroller.ScrollTarget;
+
+/**
+ * A scroll target without a widget. It only remembers position of the visible
+ * area and can pretend that repainting takes time.
+ * 
+ * @author Mateusz Matela
+ */
+public class ReplayTarget implements ScrollTarget {
+
+	private final VirtualClock clock;
+
+	private final int lineHeight;
+
+	private final int lineCount;
+
+	private int paintCost;
+
+	private int topPixel;
+
+	private int horizontalPixel;
+
+	/**
+	 * 
+	 * @param clock
+	 *            the clock moved forward when the target is repainted
+	 * @param lineHeight
+	 *            height of a line in pixels
+	 * @param lineCount
+	 *            number of lines of the pretended document
+	 */
+	public ReplayTarget(VirtualClock clock, int lineHeight, int lineCount) {
+		this.clock = clock;
+		this.lineHeight = lineHeight;
+		this.lineCount = lineCount;
+	}
+
+	/**
+	 * 
+	 * @param paintCost
+	 *            number of milliseconds every repaint takes
+	 */
+	public void setPaintCost(int paintCost) {
+		this.paintCost = paintCost;
+	}
+
+	public boolean isDisposed() {
+		return false;
+	}
+
+	public int getLineHeight() {
+		return lineHeight;
+	}
+
+	public int getLineCount() {
+		return lineCount;
+	}
+
+	public int getTopLine() {
+		return topPixel / lineHeight;
+	}
+
+	public void scrollPixels(int horizontal, int vertical) {
+		topPixel += vertical;
+		horizontalPixel += horizontal;
+	}
+
+	public void scrollLines(int horizontal, int lines) {
+		topPixel += lines * lineHeight;
+		horizontalPixel += horizontal;
+	}
+
+	public void update() {
+		clock.advance(paintCost);
+	}
+
+	/**
+	 * 
+	 * @return vertical position of the visible area in pixels. Unlike in a
+	 *         real widget it isn't limited by the document's size.
+	 */
+	public int getTopPixel() {
+		return topPixel;
+	}
+
+	/**
+	 * 
+	 * @return horizontal position of the visible area in pixels
+	 */
+	public int getHorizontalPixel() {
+		return horizontalPixel;
+	}
+}
@@ -0,0 +1,60 @@
+/*******************************************************************************
+ * Copyright (c) 2009 Mateusz Matela.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Mateusz Matela - initial API and implementation
+ *******************************************************************************/
+package org.matela.eclipsemmbscroller.replay;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assume.assumeTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.matela.eclipsemmbscroller.ScrollEngine;
+
+/**
+ * Checks that steady frames of {@link ScrollEngine} allocate no memory. The
+ * widget side of a frame is covered by
+ * <code>org.matela.eclipsemmbscroller.FrameAllocationTest</code>.
+ * 
+ * @author Mateusz Matela
+ */
+public class ScrollEngineAllocationTest {
+
+	private static final int FRAMES = 20000;
+
+	private ScrollReplay replay;
+
+	@Before
+	public void setUp() {
+		assumeTrue(new AllocationCounter().isSupported());
+		replay = new ScrollReplay();
+	}
+
+	@Test
+	public void testVariableInterval() {
+		assertNoAllocation();
+	}
+
+	@Test
+	public void testFixedFrameRate() {
+		replay.setFrameRate(60);
+		assertNoAllocation();
+	}
+
+	@Test
+	public void testTurbo() {
+		replay.setFrameRate(60);
+		replay.setTurbo(true);
+		assertNoAllocation();
+	}
+
+	private void assertNoAllocation() {
+		assertEquals(0, replay.measureAllocation(150, FRAMES), 0);
+	}
+}
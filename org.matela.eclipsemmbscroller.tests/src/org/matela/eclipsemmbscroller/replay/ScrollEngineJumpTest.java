@@ -0,0 +1,80 @@
+/*******************************************************************************
+ * Copyright (c) 2009 Mateusz Matela.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Mateusz Matela - initial API and implementation
+ *******************************************************************************/
+package org.matela.eclipsemmbscroller.replay;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.matela.eclipsemmbscroller.ScrollEngine;
+
+/**
+ * Checks jump scrolling of {@link ScrollEngine}, in which the vertical
+ * location of the cursor maps to a position in the document.
+ * 
+ * @author Mateusz Matela
+ */
+public class ScrollEngineJumpTest {
+
+	private static final int LINE_COUNT = 1000;
+
+	private static final int DEAD_ZONE = 12;
+
+	private VirtualClock clock;
+
+	private ReplayTarget target;
+
+	private ScrollEngine engine;
+
+	@Before
+	public void setUp() {
+		clock = new VirtualClock();
+		target = new ReplayTarget(clock, 16, LINE_COUNT);
+	}
+
+	/**
+	 * The cursor moves from the middle to the bottom of the screen
+	 */
+	private void startJump() {
+		CursorTrajectory trajectory = new CursorTrajectory(new long[] { 0,
+				10 }, new int[] { 0, 0 }, new int[] { 500, 1000 });
+		trajectory.setClock(clock);
+		engine = new ScrollEngine(trajectory, clock);
+		engine.setDeadZone(DEAD_ZONE);
+		engine.startJump(target, 0, 500, 0, 1000);
+	}
+
+	/**
+	 * Stopping cancels the session, so the cursor's last move is ignored
+	 */
+	@Test
+	public void testStopDiscardsPendingJump() {
+		startJump();
+		clock.set(10);
+		engine.stop();
+		assertEquals(0, target.getTopLine());
+	}
+
+	@Test
+	public void testReleaseAppliesPendingJump() {
+		startJump();
+		clock.set(10);
+		engine.release();
+		assertEquals(LINE_COUNT - 1, target.getTopLine());
+	}
+
+	@Test
+	public void testJumpInDeadZone() {
+		startJump();
+		engine.release();
+		assertEquals(0, target.getTopLine());
+	}
+}
@@ -0,0 +1,515 @@
+/*******************************************************************************
+ * Copyright (c) 2009 Mateusz Matela.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Mateusz Matela - initial API and implementation
+ *******************************************************************************/
+package org.matela.eclipsemmbscroller.replay;
+
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+
+import org.matela.eclipsemmbscroller.AccelerationProfile;
+import org.matela.eclipsemmbscroller.ScrollEngine;
+
+/**
+ * Replays cursor trajectories through {@link ScrollEngine} with a virtual
+ * clock and no display, and measures how smooth the resulting scrolling is.
+ * Replays are deterministic, so changes to the engine can be compared by
+ * numbers instead of by eye.
+ * <p>
+ * Running this class as a Java application replays a trajectory file given as
+ * the only argument (see {@link CursorTrajectory#read(Reader)}) or a synthetic
+ * trajectory and prints the metrics for a few configurations.
+ * 
+ * @author Mateusz Matela
+ */
+public class ScrollReplay {
+
+	/**
+	 * Time (in milliseconds) without movement of the visible area that is
+	 * counted as a stall if the area should have moved by at least one pixel
+	 * in that time
+	 */
+	public static final int STALL_THRESHOLD = 50;
+
+	/**
+	 * The longest time (in milliseconds) momentum scrolling is replayed after
+	 * the release
+	 */
+	private static final int MAX_COASTING_TIME = 60000;
+
+	/**
+	 * Interval (in milliseconds) between mouse move events, which wake up the
+	 * parked engine
+	 */
+	private static final int MOUSE_EVENT_INTERVAL = 8;
+
+	/**
+	 * Frames and smoothness metrics of one replay.
+	 */
+	public static class Result {
+		private long[] frameTimes = new long[256];
+
+		private int[] horizontals = new int[256];
+
+		private int[] verticals = new int[256];
+
+		private int frameCount;
+
+		private final long startTime;
+
+		private final double[] idealHorizontals;
+
+		private final double[] idealVerticals;
+
+		private Result(long startTime, double[] idealHorizontals,
+				double[] idealVerticals) {
+			this.startTime = startTime;
+			this.idealHorizontals = idealHorizontals;
+			this.idealVerticals = idealVerticals;
+		}
+
+		private void addFrame(long time, int horizontal, int vertical) {
+			if (frameCount == frameTimes.length) {
+				frameTimes = grow(frameTimes);
+				horizontals = grow(horizontals);
+				verticals = grow(verticals);
+			}
+			frameTimes[frameCount] = time;
+			horizontals[frameCount] = horizontal;
+			verticals[frameCount] = vertical;
+			frameCount++;
+		}
+
+		/**
+		 * 
+		 * @return number of recorded frames, including the starting position
+		 */
+		public int getFrameCount() {
+			return frameCount;
+		}
+
+		/**
+		 * 
+		 * @param frame
+		 *            index of the frame
+		 * @return time (in milliseconds) of given frame
+		 */
+		public long getFrameTime(int frame) {
+			return frameTimes[frame];
+		}
+
+		/**
+		 * 
+		 * @param frame
+		 *            index of the frame
+		 * @return horizontal position (in pixels) of the visible area after
+		 *         given frame
+		 */
+		public int getHorizontalPosition(int frame) {
+			return horizontals[frame];
+		}
+
+		/**
+		 * 
+		 * @param frame
+		 *            index of the frame
+		 * @return vertical position (in pixels) of the visible area after given
+		 *         frame
+		 */
+		public int getVerticalPosition(int frame) {
+			return verticals[frame];
+		}
+
+		/**
+		 * 
+		 * @return root mean square difference (in pixels per second) between
+		 *         the velocity of the visible area in every frame before the
+		 *         release and the velocity given by the speed curve for the
+		 *         exact cursor trajectory
+		 */
+		public double getVelocityError() {
+			double sum = 0;
+			int intervals = 0;
+			int heldFrames = getHeldFrameCount();
+			for (int i = 1; i < heldFrames; i++) {
+				long dt = frameTimes[i] - frameTimes[i - 1];
+				if (dt <= 0)
+					continue;
+				double dh = (horizontals[i] - horizontals[i - 1])
+						- (getIdealHorizontal(frameTimes[i]) - getIdealHorizontal(frameTimes[i - 1]));
+				double dv = (verticals[i] - verticals[i - 1])
+						- (getIdealVertical(frameTimes[i]) - getIdealVertical(frameTimes[i - 1]));
+				sum += (dh * dh + dv * dv) / (dt * dt);
+				intervals++;
+			}
+			if (intervals == 0)
+				return 0;
+			return Math.sqrt(sum / intervals) * 1000;
+		}
+
+		/**
+		 * 
+		 * @return number of periods longer than {@link #STALL_THRESHOLD} in
+		 *         which the visible area didn't move before the release
+		 *         although it should have moved by at least one pixel
+		 */
+		public int getStallCount() {
+			int stalls = 0;
+			int lastMove = 0;
+			int heldFrames = getHeldFrameCount();
+			for (int i = 1; i < heldFrames; i++) {
+				boolean moved = horizontals[i] != horizontals[i - 1]
+						|| verticals[i] != verticals[i - 1];
+				if (!moved && i < heldFrames - 1)
+					continue;
+				long from = frameTimes[lastMove];
+				long to = frameTimes[i];
+				if (to - from > STALL_THRESHOLD
+						&& Math.abs(getIdealHorizontal(to)
+								- getIdealHorizontal(from))
+								+ Math.abs(getIdealVertical(to)
+										- getIdealVertical(from)) >= 1)
+					stalls++;
+				lastMove = i;
+			}
+			return stalls;
+		}
+
+		/**
+		 * 
+		 * @return distance (in pixels) the visible area has been moved past
+		 *         the position given by the speed curve at the moment of
+		 *         releasing the button, including movement with momentum after
+		 *         the release. Any movement along an axis in which the area
+		 *         shouldn't have moved at all counts too.
+		 */
+		public int getOvershoot() {
+			if (frameCount == 0)
+				return 0;
+			return overshoot(horizontals[frameCount - 1],
+					idealHorizontals[idealHorizontals.length - 1])
+					+ overshoot(verticals[frameCount - 1],
+							idealVerticals[idealVerticals.length - 1]);
+		}
+
+		private static int overshoot(int actual, double ideal) {
+			int rounded = (int) Math.round(ideal);
+			if (rounded == 0)
+				return Math.abs(actual);
+			return Math.max(0, rounded > 0 ? actual - rounded : rounded
+					- actual);
+		}
+
+		/**
+		 * 
+		 * @return number of frames executed before the release
+		 */
+		public int getHeldFrameCount() {
+			int frames = frameCount;
+			while (frames > 0
+					&& frameTimes[frames - 1] - startTime >= idealVerticals.length)
+				frames--;
+			return frames;
+		}
+
+		private double getIdealHorizontal(long time) {
+			return idealHorizontals[index(time)];
+		}
+
+		private double getIdealVertical(long time) {
+			return idealVerticals[index(time)];
+		}
+
+		private int index(long time) {
+			return (int) Math.max(0, Math.min(time - startTime,
+					idealVerticals.length - 1));
+		}
+
+		public String toString() {
+			return "frames: " + frameCount + ", velocity error: "
+					+ Math.round(getVelocityError()) + " px/s, stalls: "
+					+ getStallCount() + ", overshoot: " + getOvershoot()
+					+ " px";
+		}
+
+		private static long[] grow(long[] array) {
+			long[] result = new long[array.length * 2];
+			System.arraycopy(array, 0, result, 0, array.length);
+			return result;
+		}
+
+		private static int[] grow(int[] array) {
+			int[] result = new int[array.length * 2];
+			System.arraycopy(array, 0, result, 0, array.length);
+			return result;
+		}
+	}
+
+	private int frameRate;
+
+	private boolean turbo;
+
+	private int deadZone = 12;
+
+	private AccelerationProfile profile = AccelerationProfile.DEFAULT;
+
+	private boolean momentum;
+
+	private int lineHeight = 16;
+
+	private int lineCount = 1000;
+
+	private int paintCost;
+
+	/**
+	 * 
+	 * @param frameRate
+	 *            frames per second, or 0 for variable interval
+	 * @see ScrollEngine#setFrameRate(int)
+	 */
+	public void setFrameRate(int frameRate) {
+		this.frameRate = frameRate;
+	}
+
+	/**
+	 * 
+	 * @param turbo
+	 *            true to allow turbo scrolling by whole lines
+	 * @see ScrollEngine#setTurbo(boolean)
+	 */
+	public void setTurbo(boolean turbo) {
+		this.turbo = turbo;
+	}
+
+	/**
+	 * 
+	 * @param deadZone
+	 *            distance (in pixels) within which the cursor doesn't cause
+	 *            scrolling
+	 */
+	public void setDeadZone(int deadZone) {
+		this.deadZone = deadZone;
+	}
+
+	/**
+	 * 
+	 * @param profile
+	 *            the profile mapping distance of the cursor to scrolling speed
+	 * @see ScrollEngine#setProfile(AccelerationProfile)
+	 */
+	public void setProfile(AccelerationProfile profile) {
+		this.profile = profile;
+	}
+
+	/**
+	 * 
+	 * @param momentum
+	 *            true to let the target keep moving after the release
+	 * @see ScrollEngine#setMomentum(boolean)
+	 */
+	public void setMomentum(boolean momentum) {
+		this.momentum = momentum;
+	}
+
+	/**
+	 * 
+	 * @param lineHeight
+	 *            line height (in pixels) of the pretended document
+	 * @param lineCount
+	 *            number of lines of the pretended document
+	 */
+	public void setDocument(int lineHeight, int lineCount) {
+		this.lineHeight = lineHeight;
+		this.lineCount = lineCount;
+	}
+
+	/**
+	 * 
+	 * @param paintCost
+	 *            number of milliseconds every repaint takes
+	 */
+	public void setPaintCost(int paintCost) {
+		this.paintCost = paintCost;
+	}
+
+	/**
+	 * Replays given trajectory. At the trajectory's release time the button is
+	 * released, which stops scrolling or, with momentum, lets it continue
+	 * until the speed decays.
+	 * 
+	 * @param trajectory
+	 *            the trajectory to replay
+	 * @return recorded frames and their metrics
+	 */
+	public Result run(CursorTrajectory trajectory) {
+		VirtualClock clock = new VirtualClock();
+		trajectory.setClock(clock);
+		ReplayTarget target = new ReplayTarget(clock, lineHeight, lineCount);
+		target.setPaintCost(paintCost);
+		ScrollEngine engine = new ScrollEngine(trajectory, clock);
+		engine.setFrameRate(frameRate);
+		engine.setTurbo(turbo);
+		engine.setDeadZone(deadZone);
+		engine.setProfile(profile);
+		engine.setMomentum(momentum);
+
+		long startTime = trajectory.getStartTime();
+		long releaseTime = trajectory.getReleaseTime();
+		Result result = createResult(trajectory);
+		clock.set(startTime);
+		result.addFrame(startTime, 0, 0);
+		int delay = engine.start(target, trajectory.getX(startTime),
+				trajectory.getY(startTime));
+		boolean released = false;
+		while (delay != ScrollEngine.STOPPED) {
+			boolean parked = delay == ScrollEngine.PARKED;
+			long frameTime = parked ? getNextMoveTime(trajectory, clock
+					.currentTimeMillis()) : clock.currentTimeMillis() + delay;
+			if (!released && frameTime > releaseTime) {
+				released = true;
+				if (!engine.release())
+					break;
+			}
+			if (frameTime > releaseTime + MAX_COASTING_TIME)
+				break;
+			clock.set(frameTime);
+			delay = parked ? engine.wake() : engine.tick();
+			result.addFrame(frameTime, target.getHorizontalPixel(), target
+					.getTopPixel());
+		}
+		engine.stop();
+		return result;
+	}
+
+	/**
+	 * 
+	 * @return time of the first mouse move event after given time that
+	 *         changes the location of the cursor, or a time after the release
+	 *         if there's no such event
+	 */
+	private long getNextMoveTime(CursorTrajectory trajectory, long time) {
+		int x = trajectory.getX(time);
+		int y = trajectory.getY(time);
+		long releaseTime = trajectory.getReleaseTime();
+		do {
+			time += MOUSE_EVENT_INTERVAL;
+		} while (time <= releaseTime && trajectory.getX(time) == x
+				&& trajectory.getY(time) == y);
+		return time;
+	}
+
+	/**
+	 * Measures memory allocated by the engine while the cursor is held still.
+	 * Frames are executed back to back: the first half warms the engine up,
+	 * only the second half is measured.
+	 * 
+	 * @param distance
+	 *            vertical distance (in pixels) of the held cursor from the
+	 *            starting point
+	 * @param frames
+	 *            number of frames to execute
+	 * @return number of bytes allocated per frame, or -1 if the virtual
+	 *         machine can't measure memory allocated by a thread
+	 * @see AllocationCounter
+	 */
+	public double measureAllocation(int distance, int frames) {
+		AllocationCounter counter = new AllocationCounter();
+		if (!counter.isSupported())
+			return -1;
+
+		VirtualClock clock = new VirtualClock();
+		CursorTrajectory trajectory = new CursorTrajectory(
+				new long[] { 0, 1 }, new int[] { 0, 0 }, new int[] { 0,
+						distance });
+		trajectory.setClock(clock);
+		ReplayTarget target = new ReplayTarget(clock, lineHeight,
+				Integer.MAX_VALUE / lineHeight);
+		ScrollEngine engine = new ScrollEngine(trajectory, clock);
+		engine.setFrameRate(frameRate);
+		engine.setTurbo(turbo);
+		engine.setDeadZone(deadZone);
+		engine.setProfile(profile);
+		int delay = engine.start(target, 0, 0);
+		clock.set(1);
+		delay = engine.wake();
+		for (int i = 0; i < frames / 2 && delay >= 0; i++) {
+			clock.advance(delay);
+			delay = engine.tick();
+		}
+
+		long start = counter.read();
+		int measured = 0;
+		for (; measured < frames - frames / 2 && delay >= 0; measured++) {
+			clock.advance(delay);
+			delay = engine.tick();
+		}
+		long allocated = counter.since(start);
+		engine.stop();
+		if (allocated < 0)
+			return -1;
+		if (measured == 0)
+			return 0;
+		return (double) allocated / measured;
+	}
+
+	/**
+	 * Integrates the speed curve over the exact trajectory with one
+	 * millisecond resolution.
+	 */
+	private Result createResult(CursorTrajectory trajectory) {
+		long startTime = trajectory.getStartTime();
+		int length = (int) (trajectory.getReleaseTime() - startTime) + 1;
+		double[] horizontals = new double[length];
+		double[] verticals = new double[length];
+		int initialX = trajectory.getX(startTime);
+		int initialY = trajectory.getY(startTime);
+		for (int i = 1; i < length; i++) {
+			long time = startTime + i;
+			horizontals[i] = horizontals[i - 1]
+					+ profile.getSpeed(trajectory.getX(time) - initialX,
+							deadZone);
+			verticals[i] = verticals[i - 1]
+					+ profile.getSpeed(trajectory.getY(time) - initialY,
+							deadZone);
+		}
+		return new Result(startTime, horizontals, verticals);
+	}
+
+	public static void main(String[] args) throws IOException {
+		CursorTrajectory trajectory;
+		if (args.length > 0) {
+			Reader reader = new FileReader(args[0]);
+			try {
+				trajectory = CursorTrajectory.read(reader);
+			} finally {
+				reader.close();
+			}
+		} else {
+			trajectory = CursorTrajectory.createSwing(150, 1000, 2000);
+		}
+
+		ScrollReplay replay = new ScrollReplay();
+		System.out.println("variable interval: " + replay.run(trajectory));
+		replay.setFrameRate(60);
+		System.out.println("60 fps: " + replay.run(trajectory));
+		replay.setPaintCost(20);
+		System.out.println("60 fps, 20 ms repaint: " + replay.run(trajectory));
+		replay.setPaintCost(0);
+		replay.setTurbo(true);
+		replay.setDocument(16, 20000);
+		System.out.println("60 fps, turbo, 20000 lines: "
+				+ replay.run(trajectory));
+		replay.setTurbo(false);
+		replay.setDocument(16, 1000);
+		replay.setMomentum(true);
+		System.out.println("60 fps, momentum after flick: "
+				+ replay.run(CursorTrajectory.createFlick(100, 300)));
+	}
+}
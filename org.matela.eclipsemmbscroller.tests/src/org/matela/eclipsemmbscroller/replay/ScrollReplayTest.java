@@ -0,0 +1,117 @@
+/*******************************************************************************
+ * Copyright (c) 2009 Mateusz Matela.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Mateusz Matela - initial API and implementation
+ *******************************************************************************/
+package org.matela.eclipsemmbscroller.replay;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Checks smoothness of scrolling by replaying synthetic trajectories with
+ * {@link ScrollReplay}.
+ * 
+ * @author Mateusz Matela
+ */
+public class ScrollReplayTest {
+
+	/**
+	 * The largest acceptable velocity error (in pixels per second)
+	 */
+	private static final double MAX_VELOCITY_ERROR = 60;
+
+	/**
+	 * The cursor starts in the dead zone, so the first move of the visible
+	 * area may come later than the ideal curve says
+	 */
+	private static final int MAX_STALLS = 1;
+
+	private ScrollReplay replay;
+
+	private CursorTrajectory swing;
+
+	@Before
+	public void setUp() {
+		replay = new ScrollReplay();
+		swing = CursorTrajectory.createSwing(150, 1000, 2000);
+	}
+
+	@Test
+	public void testDeterministic() {
+		replay.setFrameRate(60);
+		ScrollReplay.Result first = replay.run(swing);
+		ScrollReplay.Result second = replay.run(swing);
+		assertEquals(first.getFrameCount(), second.getFrameCount());
+		for (int i = 0; i < first.getFrameCount(); i++) {
+			assertEquals(first.getFrameTime(i), second.getFrameTime(i));
+			assertEquals(first.getVerticalPosition(i), second
+					.getVerticalPosition(i));
+		}
+	}
+
+	@Test
+	public void testVariableInterval() {
+		assertSmooth(replay.run(swing));
+	}
+
+	@Test
+	public void testFixedFrameRate() {
+		replay.setFrameRate(60);
+		assertSmooth(replay.run(swing));
+	}
+
+	@Test
+	public void testSlowRepaint() {
+		replay.setFrameRate(60);
+		replay.setPaintCost(20);
+		ScrollReplay.Result result = replay.run(swing);
+		assertTrue(result.toString(),
+				result.getVelocityError() < MAX_VELOCITY_ERROR);
+		assertTrue(result.toString(), result.getStallCount() <= MAX_STALLS);
+		/* the frame in progress at the release may finish its line */
+		assertTrue(result.toString(), result.getOvershoot() < 16);
+	}
+
+	@Test
+	public void testTurbo() {
+		replay.setFrameRate(60);
+		replay.setTurbo(true);
+		replay.setDocument(16, 20000);
+		assertSmooth(replay.run(swing));
+	}
+
+	@Test
+	public void testMomentum() {
+		replay.setFrameRate(60);
+		replay.setMomentum(true);
+		ScrollReplay.Result result = replay.run(CursorTrajectory.createFlick(
+				100, 300));
+		assertTrue(result.toString(), result.getFrameCount() > result
+				.getHeldFrameCount() + 1);
+		assertTrue(result.toString(), result.getOvershoot() > 0);
+	}
+
+	@Test
+	public void testNoMomentum() {
+		replay.setFrameRate(60);
+		ScrollReplay.Result result = replay.run(CursorTrajectory.createFlick(
+				100, 300));
+		assertEquals(result.toString(), 0, result.getOvershoot());
+	}
+
+	private static void assertSmooth(ScrollReplay.Result result) {
+		assertTrue(result.toString(),
+				result.getVelocityError() < MAX_VELOCITY_ERROR);
+		assertTrue(result.toString(), result.getStallCount() <= MAX_STALLS);
+		assertEquals(result.toString(), 0, result.getOvershoot());
+	}
+}
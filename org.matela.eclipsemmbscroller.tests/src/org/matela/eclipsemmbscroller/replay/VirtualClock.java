@@ -0,0 +1,45 @@
+/*******************************************************************************
+ * Copyright (c) 2009 Mateusz Matela.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Mateusz Matela - initial API and implementation
+ *******************************************************************************/
+package org.matela.eclipsemmbscroller.replay;
+
+import org.matela.eclipsemmbscroller.FrameClock;
+
+/**
+ * A clock whose time moves only when it's told to.
+ * 
+ * @author Mateusz Matela
+ */
+public class VirtualClock implements FrameClock {
+
+	private long time;
+
+	public long currentTimeMillis() {
+		return time;
+	}
+
+	/**
+	 * 
+	 * @param time
+	 *            new current time in milliseconds
+	 */
+	public void set(long time) {
+		this.time = time;
+	}
+
+	/**
+	 * 
+	 * @param millis
+	 *            number of milliseconds to move the time forward by
+	 */
+	public void advance(long millis) {
+		time += millis;
+	}
+}
@@ -0,0 +1,188 @@
+/*******************************************************************************
+ * Copyright (c) 2009 Mateusz Matela.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Mateusz Matela - initial API and implementation
+ *******************************************************************************/
+package org.matela.eclipsemmbscroller;
+
+import java.util.StringTokenizer;
+
+/**
+ * Maps the distance of the mouse cursor from the point where scrolling has
+ * started to scrolling speed. The speed for every distance is computed once,
+ * when the profile is created, and stored in a table of integers, so that
+ * moving the cursor costs only a lookup.
+ * 
+ * @author Mateusz Matela
+ */
+public class AccelerationProfile {
+
+	/**
+	 * Speed grows proportionally to the distance
+	 */
+	public static final String LINEAR = "linear";
+
+	/**
+	 * Speed grows with the square of the distance. This is the original curve
+	 * of {@link ScrollSpeedCurve#getSpeed(int, int)}.
+	 */
+	public static final String QUADRATIC = "quadratic";
+
+	/**
+	 * Speed grows exponentially with the distance
+	 */
+	public static final String EXPONENTIAL = "exponential";
+
+	/**
+	 * Speed is interpolated between points given by the user
+	 */
+	public static final String CUSTOM = "custom";
+
+	/**
+	 * The greatest distance (in pixels) with its own entry in the table.
+	 * Cursor further away scrolls with the same speed.
+	 */
+	public static final int MAX_DISTANCE = 4096;
+
+	/**
+	 * Speeds in the table are expressed in pixels per millisecond multiplied
+	 * by this number
+	 */
+	private static final int SPEED_SCALE = 1000000;
+
+	/**
+	 * The greatest speed (in pixels per millisecond) of any profile
+	 */
+	private static final double MAX_SPEED = 100;
+
+	private static final double LINEAR_FACTOR = 0.009;
+
+	private static final double EXPONENTIAL_FACTOR = 0.14;
+
+	private static final double EXPONENTIAL_SCALE = 50;
+
+	/**
+	 * The profile used when none is configured
+	 */
+	public static final AccelerationProfile DEFAULT = new AccelerationProfile(
+			QUADRATIC, 100, null);
+
+	private final int[] speeds = new int[MAX_DISTANCE + 1];
+
+	/**
+	 * 
+	 * @param type
+	 *            one of {@link #LINEAR}, {@link #QUADRATIC},
+	 *            {@link #EXPONENTIAL} and {@link #CUSTOM}
+	 * @param gain
+	 *            percentage by which all the speeds are multiplied
+	 * @param points
+	 *            points of the {@link #CUSTOM} profile in the format accepted
+	 *            by {@link #parsePoints(String)}. Ignored by other profiles.
+	 * @throws IllegalArgumentException
+	 *             if the type is unknown or the points are malformed
+	 */
+	public AccelerationProfile(String type, int gain, String points) {
+		int[] customPoints = null;
+		if (CUSTOM.equals(type))
+			customPoints = parsePoints(points);
+		else if (!LINEAR.equals(type) && !QUADRATIC.equals(type)
+				&& !EXPONENTIAL.equals(type))
+			throw new IllegalArgumentException("Unknown acceleration profile: "
+					+ type);
+		for (int distance = 0; distance <= MAX_DISTANCE; distance++) {
+			double speed;
+			if (LINEAR.equals(type))
+				speed = LINEAR_FACTOR * distance;
+			else if (QUADRATIC.equals(type))
+				speed = ScrollSpeedCurve.getSpeed(distance, 0);
+			else if (EXPONENTIAL.equals(type))
+				speed = EXPONENTIAL_FACTOR
+						* (Math.exp(distance / EXPONENTIAL_SCALE) - 1);
+			else
+				speed = interpolate(customPoints, distance) / 1000.0;
+			speed = Math.min(speed * gain / 100, MAX_SPEED);
+			speeds[distance] = (int) Math.round(speed * SPEED_SCALE);
+		}
+	}
+
+	/**
+	 * Parses points of the {@link #CUSTOM} profile. The points are separated
+	 * with commas, and each of them consists of a distance (in pixels) and a
+	 * speed (in pixels per second) separated with a colon, for example
+	 * <code>0:0, 50:100, 200:2000</code>. Distances must be increasing. Speed
+	 * between the points is interpolated linearly and beyond the last point
+	 * it's constant.
+	 * 
+	 * @param points
+	 *            the points to parse
+	 * @return distances and speeds of the points, alternately
+	 * @throws IllegalArgumentException
+	 *             if the points are malformed
+	 */
+	public static int[] parsePoints(String points) {
+		if (points == null)
+			throw new IllegalArgumentException("No acceleration points");
+		StringTokenizer tokenizer = new StringTokenizer(points, ", \t");
+		int[] result = new int[tokenizer.countTokens() * 2];
+		if (result.length == 0)
+			throw new IllegalArgumentException("No acceleration points");
+		for (int i = 0; i < result.length; i += 2) {
+			String point = tokenizer.nextToken();
+			int colon = point.indexOf(':');
+			try {
+				if (colon < 0)
+					throw new NumberFormatException();
+				result[i] = Integer.parseInt(point.substring(0, colon));
+				result[i + 1] = Integer.parseInt(point.substring(colon + 1));
+			} catch (NumberFormatException e) {
+				throw new IllegalArgumentException(
+						"Acceleration point is not distance:speed - " + point);
+			}
+			if (result[i] < 0 || result[i + 1] < 0)
+				throw new IllegalArgumentException(
+						"Acceleration point can't be negative - " + point);
+			if (i > 0 && result[i] <= result[i - 2])
+				throw new IllegalArgumentException(
+						"Acceleration point distances must be increasing - "
+								+ point);
+		}
+		return result;
+	}
+
+	/**
+	 * 
+	 * @param distance
+	 *            the distance (in pixels) of the cursor from the point where
+	 *            scrolling has started, along one axis
+	 * @param deadZone
+	 *            the distance within which scrolling doesn't happen
+	 * @return scrolling speed along the same axis in pixels per millisecond,
+	 *         negative for scrolling up or left
+	 */
+	public double getSpeed(int distance, int deadZone) {
+		int value = Math.min(Math.abs(distance) - deadZone, MAX_DISTANCE);
+		if (value <= 0)
+			return 0;
+		double speed = (double) speeds[value] / SPEED_SCALE;
+		return distance < 0 ? -speed : speed;
+	}
+
+	private static double interpolate(int[] points, int distance) {
+		if (distance <= points[0])
+			return points[1];
+		for (int i = 2; i < points.length; i += 2) {
+			if (distance < points[i]) {
+				return points[i - 1] + (double) (points[i + 1] - points[i - 1])
+						* (distance - points[i - 2])
+						/ (points[i] - points[i - 2]);
+			}
+		}
+		return points[points.length - 1];
+	}
+}
@@ -10,6 +10,15 @@
  *******************************************************************************/
 package org.matela.eclipsemmbscroller;
 
+import java.lang.management.ManagementFactory;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Platform;
+import org.eclipse.core.runtime.Status;
 import org.eclipse.jface.resource.ImageDescriptor;
 import org.eclipse.ui.plugin.AbstractUIPlugin;
 import org.osgi.framework.BundleContext;
@@ -27,6 +36,10 @@ public class Activator extends AbstractUIPlugin {
 	// The shared instance
 	private static Activator plugin;
 
+	private static final String STATISTICS_MBEAN_NAME = "org.matela.eclipsemmbscroller:type=ScrollStatistics";
+
+	private ObjectName statisticsMBeanName;
+
 	/**
 	 * The constructor
 	 */
@@ -41,8 +54,15 @@ public class Activator extends AbstractUIPlugin {
 	 * )
 	 */
 	public void start(BundleContext context) throws Exception {
+		long startTime = System.nanoTime();
 		super.start(context);
 		plugin = this;
+
+		if (isDebugging() && isDebugOptionSet("/debug/statistics")) {
+			registerStatistics(isDebugOptionSet("/debug/statistics/trace"));
+			ScrollStatistics.getDefault().pluginStarted(
+					System.nanoTime() - startTime);
+		}
 	}
 
 	/*
@@ -54,11 +74,49 @@ public class Activator extends AbstractUIPlugin {
 	 */
 	public void stop(BundleContext context) throws Exception {
 		StyledTextScroller.disposeAll();
+		unregisterStatistics();
 
 		plugin = null;
 		super.stop(context);
 	}
 
+	private boolean isDebugOptionSet(String option) {
+		return "true".equalsIgnoreCase(Platform.getDebugOption(getBundle()
+				.getSymbolicName()
+				+ option));
+	}
+
+	/**
+	 * Enables collecting of scrolling statistics and makes them available
+	 * through JMX.
+	 */
+	private void registerStatistics(boolean trace) {
+		ScrollStatistics statistics = ScrollStatistics.enable(trace);
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			ObjectName name = new ObjectName(STATISTICS_MBEAN_NAME);
+			server.registerMBean(statistics, name);
+			statisticsMBeanName = name;
+		} catch (JMException e) {
+			getLog().log(
+					new Status(IStatus.WARNING, PLUGIN_ID,
+							"Could not register scrolling statistics MBean", e));
+		}
+	}
+
+	private void unregisterStatistics() {
+		ScrollStatistics.disable();
+		if (statisticsMBeanName == null)
+			return;
+		try {
+			ManagementFactory.getPlatformMBeanServer().unregisterMBean(
+					statisticsMBeanName);
+		} catch (JMException e) {
+			// already unregistered
+		}
+		statisticsMBeanName = null;
+	}
+
 	/**
 	 * Returns the shared instance
 	 * 
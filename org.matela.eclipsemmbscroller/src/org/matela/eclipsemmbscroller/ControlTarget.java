@@ -0,0 +1,95 @@
+/*******************************************************************************
+ * Copyright (c) 2009 Mateusz Matela.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Mateusz Matela - initial API and implementation
+ *******************************************************************************/
+package org.matela.eclipsemmbscroller;
+
+import org.eclipse.swt.custom.StyledText;
+import org.eclipse.swt.widgets.Composite;
+import org.eclipse.swt.widgets.Control;
+import org.eclipse.swt.widgets.ScrollBar;
+import org.eclipse.swt.widgets.Scrollable;
+import org.eclipse.swt.widgets.Table;
+import org.eclipse.swt.widgets.Tree;
+
+/**
+ * Base class of {@link ScrollTarget}s moving the visible area of SWT
+ * controls.
+ * 
+ * @author Mateusz Matela
+ */
+abstract class ControlTarget implements ScrollTarget {
+
+	/**
+	 * 
+	 * @param control
+	 *            the control to check
+	 * @return true if a target can be created for given control
+	 */
+	public static boolean isSupported(Control control) {
+		if (control instanceof StyledText || control instanceof Table
+				|| control instanceof Tree)
+			return true;
+		/*
+		 * native controls, like Text or List, don't move their contents when
+		 * the scroll bars are changed, so only composites are left
+		 */
+		if (control instanceof Composite) {
+			ScrollBar verticalBar = ((Scrollable) control).getVerticalBar();
+			ScrollBar horizontalBar = ((Scrollable) control).getHorizontalBar();
+			return (verticalBar != null && verticalBar.isVisible())
+					|| (horizontalBar != null && horizontalBar.isVisible());
+		}
+		return false;
+	}
+
+	/**
+	 * 
+	 * @param control
+	 *            the control to scroll
+	 * @return a target moving the visible area of given control
+	 * @throws IllegalArgumentException
+	 *             if the control isn't supported
+	 * @see #isSupported(Control)
+	 */
+	public static ControlTarget create(Control control) {
+		if (control instanceof StyledText)
+			return new StyledTextTarget((StyledText) control);
+		if (control instanceof Table)
+			return new TableTarget((Table) control);
+		if (control instanceof Tree)
+			return new TreeTarget((Tree) control);
+		if (control instanceof Composite)
+			return new ScrollBarTarget((Composite) control);
+		throw new IllegalArgumentException("Can't scroll "
+				+ control.getClass().getName());
+	}
+
+	private final Control control;
+
+	protected ControlTarget(Control control) {
+		this.control = control;
+	}
+
+	/**
+	 * 
+	 * @return the scrolled control
+	 */
+	public Control getControl() {
+		return control;
+	}
+
+	public boolean isDisposed() {
+		return control.isDisposed();
+	}
+
+	public void update() {
+		control.update();
+	}
+}
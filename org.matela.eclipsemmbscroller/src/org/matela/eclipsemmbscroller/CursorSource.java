@@ -0,0 +1,31 @@
+/*******************************************************************************
+ * Copyright (c) 2009 Mateusz Matela.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Mateusz Matela - initial API and implementation
+ *******************************************************************************/
+package org.matela.eclipsemmbscroller;
+
+/**
+ * Source of the mouse cursor location during scrolling. On a real display it
+ * asks the display for the cursor location, in a replay it follows a recorded
+ * trajectory.
+ * 
+ * @author Mateusz Matela
+ */
+public interface CursorSource {
+
+	/**
+	 * Stores current location of the cursor in given array, so that nothing
+	 * is allocated in every frame.
+	 * 
+	 * @param location
+	 *            array receiving the horizontal (at index 0) and vertical (at
+	 *            index 1) position of the cursor in display coordinates
+	 */
+	public void getLocation(int[] location);
+}
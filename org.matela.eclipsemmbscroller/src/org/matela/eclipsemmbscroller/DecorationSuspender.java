@@ -0,0 +1,137 @@
+/*******************************************************************************
+ * Copyright (c) 2009 Mateusz Matela.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Mateusz Matela - initial API and implementation
+ *******************************************************************************/
+package org.matela.eclipsemmbscroller;
+
+import java.util.ArrayList;
+
+import org.eclipse.jface.text.TextViewer;
+import org.eclipse.swt.custom.StyledText;
+import org.eclipse.swt.widgets.Canvas;
+import org.eclipse.swt.widgets.Composite;
+import org.eclipse.swt.widgets.Control;
+
+/**
+ * Turns off redrawing of the rulers next to a text viewer's widget while it
+ * is scrolled fast. When scrolling slows down or stops, the rulers are
+ * redrawn once. The rulers are found when scrolling starts, so suspending
+ * and restoring them in a frame doesn't allocate anything.
+ * <p>
+ * Painters drawing over the text (annotation, bracket, whitespace painters
+ * and similar) are not suspended. They can't be reached through the
+ * viewer's API, and their paint listeners belong to the viewer.
+ * 
+ * @author Mateusz Matela
+ */
+class DecorationSuspender {
+
+	/**
+	 * Speed (in pixels per millisecond) above which rulers are suspended
+	 */
+	private static final double SUSPEND_SPEED = 2;
+
+	/**
+	 * Speed (in pixels per millisecond) below which suspended rulers are
+	 * restored. It's lower than {@link #SUSPEND_SPEED} so that scrolling
+	 * around the threshold doesn't make them flicker.
+	 */
+	private static final double RESTORE_SPEED = 1;
+
+	private StyledText widget;
+
+	private boolean suspended;
+
+	/**
+	 * Controls next to the widget in the viewer's control
+	 */
+	private final ArrayList rulers = new ArrayList();
+
+	private final ArrayList suspendedRulers = new ArrayList();
+
+	/**
+	 * Starts watching the speed of given viewer's widget
+	 * 
+	 * @param viewer
+	 *            the scrolled viewer or null if the widget has no known viewer
+	 */
+	public void start(TextViewer viewer) {
+		widget = viewer == null ? null : viewer.getTextWidget();
+		rulers.clear();
+		Control viewerControl = viewer == null ? null : viewer.getControl();
+		if (viewerControl instanceof Composite && viewerControl != widget) {
+			Control[] children = ((Composite) viewerControl).getChildren();
+			for (int i = 0; i < children.length; i++) {
+				if (children[i] != widget && children[i] instanceof Canvas)
+					rulers.add(children[i]);
+			}
+		}
+	}
+
+	/**
+	 * Restores suspended rulers and stops watching the widget
+	 */
+	public void stop() {
+		restore();
+		widget = null;
+		rulers.clear();
+	}
+
+	/**
+	 * 
+	 * @return true if the rulers are suspended
+	 */
+	boolean isSuspended() {
+		return suspended;
+	}
+
+	/**
+	 * Suspends or restores rulers according to the current speed. Called
+	 * after every frame.
+	 * 
+	 * @param verticalSpeed
+	 *            scrolling speed in pixels per millisecond
+	 */
+	public void scrolled(double verticalSpeed) {
+		if (widget == null)
+			return;
+		double speed = Math.abs(verticalSpeed);
+		if (!suspended && speed >= SUSPEND_SPEED)
+			suspend();
+		else if (suspended && speed < RESTORE_SPEED)
+			restore();
+	}
+
+	private void suspend() {
+		if (widget.isDisposed())
+			return;
+		suspended = true;
+		for (int i = 0; i < rulers.size(); i++) {
+			Control ruler = (Control) rulers.get(i);
+			if (!ruler.isDisposed() && ruler.isVisible()) {
+				ruler.setRedraw(false);
+				suspendedRulers.add(ruler);
+			}
+		}
+	}
+
+	private void restore() {
+		if (!suspended)
+			return;
+		for (int i = 0; i < suspendedRulers.size(); i++) {
+			Control ruler = (Control) suspendedRulers.get(i);
+			if (!ruler.isDisposed()) {
+				ruler.setRedraw(true);
+				ruler.redraw();
+			}
+		}
+		suspendedRulers.clear();
+		suspended = false;
+	}
+}
@@ -0,0 +1,168 @@
+/*******************************************************************************
+ * Copyright (c) 2009 Mateusz Matela.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *    Mateusz Matela - initial API and implementation
+ *******************************************************************************/
+package org.matela.eclipsemmbscroller;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.HashMap;
+
+import org.eclipse.jface.text.ITextOperationTarget;
+import org.eclipse.jface.text.ITextViewer;
+import org.eclipse.jface.text.TextViewer;
+import org.eclipse.jface.text.source.SourceViewerConfiguration;
+import org.eclipse.ui.part.MultiPageEditorPart;
+import org.eclipse.ui.texteditor.AbstractTextEditor;
+
+/**
+ * Gives access to text viewers hidden inside editors. Non-public methods
+ * needed for that are looked up with reflection only once for every editor
+ * class and remembered, as well as the lookups that failed. If a text viewer
+ * can't be obtained this way, editor's public adapters are tried.
+ * 
+ * @author Mateusz Matela
+ */
+class EditorAccess {
+
+	private static final Object NOT_FOUND = new Object();
+
+	private static final Class[] NO_PARAMETERS = new Class[0];
+
+	private static final Object[] NO_ARGUMENTS = new Object[0];
+
+	private static final Class[] INT_PARAMETER = new Class[] { Integer.TYPE };
+
+	/**
+	 * Maps editor classes to maps from method names to found methods (or
+	 * {@link #NOT_FOUND})
+	 */
+	private final HashMap methodCache = new HashMap();
+
+	/**
+	 * Obtains given editor's text viewer
+	 * 
+	 * @param editor
+	 *            the editor to get the text viewer from
+	 * @return obtained text viewer or null if it couldn't be obtained
+	 */
+	public TextViewer getTextViewer(AbstractTextEditor editor) {
+		Object viewer = invoke(editor, "getSourceViewer", NO_PARAMETERS,
+				NO_ARGUMENTS);
+		if (viewer instanceof TextViewer)
+			return (TextViewer) viewer;
+		viewer = editor.getAdapter(ITextViewer.class);
+		if (viewer instanceof TextViewer)
+			return (TextViewer) viewer;
+		viewer = editor.getAdapter(ITextOperationTarget.class);
+		if (viewer instanceof TextViewer)
+			return (TextViewer) viewer;
+		return null;
+	}
+
+	/**
+	 * Obtains the configuration given editor has configured its source viewer
+	 * with
+	 * 
+	 * @param editor
+	 *            the editor to get the configuration from
+	 * @return obtained configuration or null if it couldn't be obtained
+	 */
+	public SourceViewerConfiguration getSourceViewerConfiguration(
+			AbstractTextEditor editor) {
+		Object configuration = invoke(editor, "getSourceViewerConfiguration",
+				NO_PARAMETERS, NO_ARGUMENTS);
+		if (configuration instanceof SourceViewerConfiguration)
+			return (SourceViewerConfiguration) configuration;
+		return null;
+	}
+
+	/**
+	 * 
+	 * @param multiEditor
+	 *            the multi-page editor
+	 * @return the number of pages in given editor or 0 if it couldn't be
+	 *         obtained
+	 */
+	public int getPageCount(MultiPageEditorPart multiEditor) {
+		Object count = invoke(multiEditor, "getPageCount", NO_PARAMETERS,
+				NO_ARGUMENTS);
+		return count instanceof Integer ? ((Integer) count).intValue() : 0;
+	}
+
+	/**
+	 * This method must be called from the GUI thread.
+	 * 
+	 * @param multiEditor
+	 *            the multi-page editor
+	 * @param index
+	 *            the index of the page
+	 * @return the editor of given page or null if the page doesn't contain an
+	 *         editor or it couldn't be obtained
+	 */
+	public Object getEditor(MultiPageEditorPart multiEditor, int index) {
+		return invoke(multiEditor, "getEditor", INT_PARAMETER,
+				new Object[] { new Integer(index) });
+	}
+
+	private Object invoke(Object target, String methodName,
+			Class[] parameterTypes, Object[] arguments) {
+		Method method = findMethod(target.getClass(), methodName,
+				parameterTypes);
+		if (method == null)
+			return null;
+		try {
+			return method.invoke(target, arguments);
+		} catch (IllegalArgumentException e) {
+			return null;
+		} catch (IllegalAccessException e) {
+			return null;
+		} catch (InvocationTargetException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Searches given class and its superclasses for a method. The result is
+	 * cached, so every lookup is performed only once.
+	 * 
+	 * @return found method (already made accessible) or null if there's no
+	 *         such method or it can't be accessed
+	 */
+	private synchronized Method findMethod(Class clazz, String methodName,
+			Class[] parameterTypes) {
+		HashMap classMethods = (HashMap) methodCache.get(clazz);
+		if (classMethods == null) {
+			classMethods = new HashMap();
+			methodCache.put(clazz, classMethods);
+		}
+		Object method = classMethods.get(methodName);
+		if (method == null) {
+			method = lookUpMethod(clazz, methodName, parameterTypes);
+			classMethods.put(methodName, method);
+		}
+		return method == NOT_FOUND ? null : (Method) method;
+	}
+
+	private Object lookUpMethod(Class clazz, String methodName,
+			Class[] parameterTypes) {
+		for (Class c = clazz; c != null; c = c.getSuperclass()) {
+			try {
+				Method method = c.getDeclaredMethod(methodName, parameterTypes);
+				method.setAccessible(true);
+				return method;
+			} catch (NoSuchMethodException e) {
+				// try the superclass
+			} catch (SecurityException e) {
+				return NOT_FOUND;
+			}
+		}
+		return NOT_FOUND;
+	}
+}
@@ -0,0 +1,38 @@
+/*******************************************************************************
+ * Copyright (c) 2009 Mateusz Matela.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Mateusz Matela - initial API and implementation
+ *******************************************************************************/
+package org.matela.eclipsemmbscroller;
+
+/**
+ * The clock measuring time of scrolling frames. A virtual clock makes it
+ * possible to replay scrolling deterministically.
+ * 
+ * @author Mateusz Matela
+ */
+public interface FrameClock {
+
+	/**
+	 * The clock based on {@link System#nanoTime()}. Unlike the wall clock, it
+	 * never goes back and has a fine resolution on every platform.
+	 */
+	public static final FrameClock SYSTEM = new FrameClock() {
+		public long currentTimeMillis() {
+			return System.nanoTime() / 1000000;
+		}
+	};
+
+	/**
+	 * 
+	 * @return current time in milliseconds. Only differences between the
+	 *         returned values are meaningful, the time may count from any
+	 *         moment.
+	 */
+	public long currentTimeMillis();
+}
@@ -0,0 +1,382 @@
+/*******************************************************************************
+ * Copyright (c) 2009 Mateusz Matela.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Mateusz Matela - initial API and implementation
+ *******************************************************************************/
+package org.matela.eclipsemmbscroller;
+
+import java.util.Arrays;
+
+/**
+ * Heights of a sequence of lines that supports finding the offset of a line,
+ * the line at an offset, changing the height of a line and inserting or
+ * removing lines, all without going through every line. This class doesn't
+ * depend on SWT, it's kept up to date with a widget by
+ * {@link LineOffsetIndex}.
+ * <p>
+ * Lines are stored in blocks of up to {@link #BLOCK_CAPACITY} lines. Two
+ * Fenwick trees over the blocks hold their line counts and heights, so a
+ * block is found in logarithmic time and the lines inside it are scanned.
+ * Inserting or removing lines shifts the rest of one block only, and the
+ * trees are rebuilt only when a block overflows or becomes empty.
+ * 
+ * @author Mateusz Matela
+ */
+class LineHeights {
+
+	/**
+	 * Number of lines in a block when blocks are created
+	 */
+	static final int BLOCK_LINES = 64;
+
+	/**
+	 * The greatest number of lines in a block
+	 */
+	static final int BLOCK_CAPACITY = 2 * BLOCK_LINES;
+
+	private int defaultHeight;
+
+	private int lineCount;
+
+	private int blockCount;
+
+	private int[][] blocks;
+
+	private int[] blockSizes;
+
+	/**
+	 * Fenwick tree of the blocks' line counts: element i holds the number of
+	 * lines in blocks from <code>i - (i &amp; -i)</code> to <code>i - 1</code>
+	 */
+	private int[] countTree;
+
+	/**
+	 * Fenwick tree of the blocks' heights, organized like {@link #countTree}
+	 */
+	private int[] heightTree;
+
+	/**
+	 * Number of lines whose height is not the default one
+	 */
+	private int deviations;
+
+	/**
+	 * Index within its block of the line last found by {@link #locate(int)}
+	 */
+	private int locatedIndex;
+
+	/**
+	 * Creates heights of given number of lines, all of the default height
+	 */
+	public LineHeights(int lineCount, int defaultHeight) {
+		reset(lineCount, defaultHeight);
+	}
+
+	/**
+	 * Sets the number of lines and the default height, and gives all lines
+	 * the default height
+	 */
+	public void reset(int lineCount, int defaultHeight) {
+		this.lineCount = lineCount;
+		this.defaultHeight = defaultHeight;
+		deviations = 0;
+		blockCount = (lineCount + BLOCK_LINES - 1) / BLOCK_LINES;
+		blocks = new int[blockCount][];
+		blockSizes = new int[blockCount];
+		for (int b = 0; b < blockCount; b++) {
+			blockSizes[b] = Math.min(BLOCK_LINES, lineCount - b * BLOCK_LINES);
+			blocks[b] = new int[BLOCK_CAPACITY];
+			Arrays.fill(blocks[b], 0, blockSizes[b], defaultHeight);
+		}
+		rebuildTrees();
+	}
+
+	public int getLineCount() {
+		return lineCount;
+	}
+
+	public int getDefaultHeight() {
+		return defaultHeight;
+	}
+
+	/**
+	 * 
+	 * @return true if all lines have the default height
+	 */
+	public boolean isUniform() {
+		return deviations == 0;
+	}
+
+	/**
+	 * 
+	 * @param line
+	 *            index of a line, from 0 to {@link #getLineCount()} - 1
+	 * @return height of given line
+	 */
+	public int getHeight(int line) {
+		int block = locate(line);
+		return blocks[block][locatedIndex];
+	}
+
+	/**
+	 * 
+	 * @param line
+	 *            index of a line, from 0 to {@link #getLineCount()} - 1
+	 * @param height
+	 *            new height of the line
+	 */
+	public void setHeight(int line, int height) {
+		int block = locate(line);
+		int oldHeight = blocks[block][locatedIndex];
+		if (height == oldHeight)
+			return;
+		if (oldHeight != defaultHeight)
+			deviations--;
+		if (height != defaultHeight)
+			deviations++;
+		blocks[block][locatedIndex] = height;
+		add(heightTree, block, height - oldHeight);
+	}
+
+	/**
+	 * 
+	 * @param line
+	 *            index of a line, from 0 to {@link #getLineCount()}
+	 * @return sum of heights of lines before given line
+	 */
+	public int getOffset(int line) {
+		if (line >= lineCount)
+			return getTotalHeight();
+		int block = locate(line);
+		int offset = sum(heightTree, block);
+		int[] heights = blocks[block];
+		for (int i = 0; i < locatedIndex; i++)
+			offset += heights[i];
+		return offset;
+	}
+
+	/**
+	 * 
+	 * @return sum of heights of all lines
+	 */
+	public int getTotalHeight() {
+		return sum(heightTree, blockCount);
+	}
+
+	/**
+	 * 
+	 * @param offset
+	 *            vertical offset from the top of the first line
+	 * @return index of the line containing given offset. Offsets beyond the
+	 *         lines give the last line.
+	 */
+	public int getLine(int offset) {
+		int block = 0;
+		for (int mask = highestBit(blockCount); mask > 0; mask >>= 1) {
+			int next = block + mask;
+			if (next <= blockCount && heightTree[next] <= offset) {
+				block = next;
+				offset -= heightTree[next];
+			}
+		}
+		if (block == blockCount)
+			return Math.max(lineCount - 1, 0);
+		int[] heights = blocks[block];
+		int i = 0;
+		while (i < blockSizes[block] - 1 && heights[i] <= offset) {
+			offset -= heights[i];
+			i++;
+		}
+		return sum(countTree, block) + i;
+	}
+
+	/**
+	 * Replaces a range of lines with lines of the default height. Heights of
+	 * the other lines are kept.
+	 * 
+	 * @param start
+	 *            index of the first replaced line, from 0 to
+	 *            {@link #getLineCount()}
+	 * @param removed
+	 *            number of replaced lines
+	 * @param inserted
+	 *            number of lines inserted in their place
+	 */
+	public void replaceLines(int start, int removed, int inserted) {
+		int common = Math.min(removed, inserted);
+		for (int i = 0; i < common; i++)
+			setHeight(start + i, defaultHeight);
+		start += common;
+		removed -= common;
+		inserted -= common;
+
+		boolean rebuild = false;
+		while (removed > 0) {
+			int block = locate(start);
+			int index = locatedIndex;
+			int count = Math.min(removed, blockSizes[block] - index);
+			int[] heights = blocks[block];
+			int height = 0;
+			for (int i = index; i < index + count; i++) {
+				height += heights[i];
+				if (heights[i] != defaultHeight)
+					deviations--;
+			}
+			System.arraycopy(heights, index + count, heights, index,
+					blockSizes[block] - index - count);
+			blockSizes[block] -= count;
+			add(countTree, block, -count);
+			add(heightTree, block, -height);
+			lineCount -= count;
+			removed -= count;
+			if (blockSizes[block] == 0)
+				rebuild = true;
+		}
+
+		if (inserted > 0) {
+			int block = blockCount - 1;
+			int index = block < 0 ? 0 : blockSizes[block];
+			if (start < lineCount) {
+				block = locate(start);
+				index = locatedIndex;
+			}
+			if (block >= 0 && blockSizes[block] + inserted <= BLOCK_CAPACITY) {
+				int[] heights = blocks[block];
+				System.arraycopy(heights, index, heights, index + inserted,
+						blockSizes[block] - index);
+				Arrays.fill(heights, index, index + inserted, defaultHeight);
+				blockSizes[block] += inserted;
+				add(countTree, block, inserted);
+				add(heightTree, block, inserted * defaultHeight);
+				lineCount += inserted;
+			} else {
+				split(Math.max(block, 0), index, inserted);
+				rebuild = true;
+			}
+		}
+		if (rebuild)
+			rebuildTrees();
+	}
+
+	/**
+	 * Inserts lines into a block that can't hold them, replacing it with as
+	 * many blocks as needed. The trees must be rebuilt afterwards.
+	 */
+	private void split(int block, int index, int inserted) {
+		int replaced = blockCount == 0 ? 0 : 1;
+		int size = replaced == 0 ? 0 : blockSizes[block];
+		int total = size + inserted;
+		int[] content = new int[total];
+		if (size > 0) {
+			System.arraycopy(blocks[block], 0, content, 0, index);
+			System.arraycopy(blocks[block], index, content, index + inserted,
+					size - index);
+		}
+		Arrays.fill(content, index, index + inserted, defaultHeight);
+
+		int created = (total + BLOCK_LINES - 1) / BLOCK_LINES;
+		int newBlockCount = blockCount - replaced + created;
+		int[][] newBlocks = new int[newBlockCount][];
+		int[] newBlockSizes = new int[newBlockCount];
+		int rest = blockCount - block - replaced;
+		System.arraycopy(blocks, 0, newBlocks, 0, block);
+		System.arraycopy(blockSizes, 0, newBlockSizes, 0, block);
+		System.arraycopy(blocks, block + replaced, newBlocks, block + created,
+				rest);
+		System.arraycopy(blockSizes, block + replaced, newBlockSizes, block
+				+ created, rest);
+		for (int i = 0; i < created; i++) {
+			int from = i * BLOCK_LINES;
+			newBlockSizes[block + i] = Math.min(BLOCK_LINES, total - from);
+			newBlocks[block + i] = new int[BLOCK_CAPACITY];
+			System.arraycopy(content, from, newBlocks[block + i], 0,
+					newBlockSizes[block + i]);
+		}
+		blocks = newBlocks;
+		blockSizes = newBlockSizes;
+		blockCount = newBlockCount;
+		lineCount += inserted;
+	}
+
+	/**
+	 * Removes empty blocks and builds the trees from scratch, in time linear
+	 * in the number of blocks
+	 */
+	private void rebuildTrees() {
+		int count = 0;
+		for (int b = 0; b < blockCount; b++) {
+			if (blockSizes[b] > 0) {
+				blocks[count] = blocks[b];
+				blockSizes[count] = blockSizes[b];
+				count++;
+			}
+		}
+		for (int b = count; b < blockCount; b++)
+			blocks[b] = null;
+		blockCount = count;
+		if (countTree == null || countTree.length < blockCount + 1) {
+			countTree = new int[blockCount + 1];
+			heightTree = new int[blockCount + 1];
+		}
+		for (int i = 1; i <= blockCount; i++) {
+			countTree[i] = blockSizes[i - 1];
+			int height = 0;
+			for (int j = 0; j < blockSizes[i - 1]; j++)
+				height += blocks[i - 1][j];
+			heightTree[i] = height;
+		}
+		for (int i = 1; i <= blockCount; i++) {
+			int parent = i + (i & -i);
+			if (parent <= blockCount) {
+				countTree[parent] += countTree[i];
+				heightTree[parent] += heightTree[i];
+			}
+		}
+	}
+
+	/**
+	 * Finds the block containing given line and sets {@link #locatedIndex}
+	 * to the line's index within it
+	 * 
+	 * @param line
+	 *            index of a line, from 0 to {@link #getLineCount()} - 1
+	 * @return index of the block
+	 */
+	private int locate(int line) {
+		int block = 0;
+		for (int mask = highestBit(blockCount); mask > 0; mask >>= 1) {
+			int next = block + mask;
+			if (next <= blockCount && countTree[next] <= line) {
+				block = next;
+				line -= countTree[next];
+			}
+		}
+		locatedIndex = line;
+		return block;
+	}
+
+	private static int highestBit(int n) {
+		return Integer.highestOneBit(Math.max(n, 1));
+	}
+
+	/**
+	 * 
+	 * @return sum of the values of blocks before given block
+	 */
+	private static int sum(int[] tree, int block) {
+		int sum = 0;
+		for (int i = block; i > 0; i -= i & -i)
+			sum += tree[i];
+		return sum;
+	}
+
+	private void add(int[] tree, int block, int delta) {
+		for (int i = block + 1; i <= blockCount; i += i & -i)
+			tree[i] += delta;
+	}
+}
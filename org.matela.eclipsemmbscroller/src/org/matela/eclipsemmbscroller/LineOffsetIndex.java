@@ -0,0 +1,233 @@
+/*******************************************************************************
+ * Copyright (c) 2009 Mateusz Matela.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Mateusz Matela - initial API and implementation
+ *******************************************************************************/
+package org.matela.eclipsemmbscroller;
+
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.custom.StyledText;
+import org.eclipse.swt.custom.StyledTextContent;
+import org.eclipse.swt.custom.TextChangeListener;
+import org.eclipse.swt.custom.TextChangedEvent;
+import org.eclipse.swt.custom.TextChangingEvent;
+import org.eclipse.swt.widgets.Event;
+import org.eclipse.swt.widgets.Listener;
+
+/**
+ * Vertical offsets of lines of a {@link StyledText} whose lines may differ in
+ * height, because of word wrapping, vertical indents (used for code minings)
+ * or line spacing. Heights are kept in {@link LineHeights}, so both the offset
+ * of a line and the line at an offset are found in logarithmic time, and so
+ * is changing the height of one line.
+ * <p>
+ * Heights of lines that haven't been shown yet are assumed to be the
+ * widget's default line height. Lines are measured when they become visible,
+ * so the index is exact around the visible area. The index is kept for the
+ * widget between scrolling sessions. Changes of the text are followed
+ * through the widget's content: only the changed lines are replaced, and the
+ * other lines keep their measured heights. The index is rebuilt when the
+ * content is replaced, when the default line height changes or, if the
+ * widget wraps lines, after it is resized.
+ * 
+ * @author Mateusz Matela
+ */
+class LineOffsetIndex implements Listener, TextChangeListener {
+
+	/**
+	 * Key of the widget's data holding its index
+	 */
+	private static final String INDEX_KEY = Activator.PLUGIN_ID
+			+ ".lineOffsetIndex";
+
+	private final StyledText widget;
+
+	/**
+	 * The content whose changes are followed, or null
+	 */
+	private StyledTextContent content;
+
+	private LineHeights heights;
+
+	private boolean stale = true;
+
+	private LineOffsetIndex(StyledText widget) {
+		this.widget = widget;
+		widget.addListener(SWT.Resize, this);
+		widget.addListener(SWT.Dispose, this);
+	}
+
+	/**
+	 * 
+	 * @param widget
+	 *            the widget
+	 * @return the index of given widget, created if necessary
+	 */
+	public static LineOffsetIndex get(StyledText widget) {
+		LineOffsetIndex index = (LineOffsetIndex) widget.getData(INDEX_KEY);
+		if (index == null) {
+			index = new LineOffsetIndex(widget);
+			widget.setData(INDEX_KEY, index);
+		}
+		return index;
+	}
+
+	/**
+	 * Removes the index of given widget, if there is one
+	 * 
+	 * @param widget
+	 *            the widget
+	 */
+	public static void remove(StyledText widget) {
+		LineOffsetIndex index = (LineOffsetIndex) widget.getData(INDEX_KEY);
+		if (index != null)
+			index.dispose();
+	}
+
+	public void handleEvent(Event event) {
+		switch (event.type) {
+		case SWT.Resize:
+			if (widget.getWordWrap())
+				stale = true;
+			break;
+		case SWT.Dispose:
+			dispose();
+			break;
+		}
+	}
+
+	public void textChanging(TextChangingEvent event) {
+		if (stale || heights == null)
+			return;
+		/* the changed line is measured again, replaced lines follow it */
+		int line = content.getLineAtOffset(event.start);
+		heights.setHeight(line, heights.getDefaultHeight());
+		heights.replaceLines(line + 1, event.replaceLineCount,
+				event.newLineCount);
+	}
+
+	public void textChanged(TextChangedEvent event) {
+		// already handled
+	}
+
+	public void textSet(TextChangedEvent event) {
+		stale = true;
+	}
+
+	private void dispose() {
+		if (!widget.isDisposed()) {
+			widget.removeListener(SWT.Resize, this);
+			widget.removeListener(SWT.Dispose, this);
+			widget.setData(INDEX_KEY, null);
+		}
+		if (content != null)
+			content.removeTextChangeListener(this);
+		content = null;
+		heights = null;
+	}
+
+	/**
+	 * Rebuilds the index if the widget has changed in a way that can't be
+	 * followed line by line
+	 */
+	private void validate() {
+		if (!stale && content == widget.getContent()
+				&& heights.getLineCount() == widget.getLineCount()
+				&& heights.getDefaultHeight() == widget.getLineHeight())
+			return;
+		if (content != widget.getContent()) {
+			if (content != null)
+				content.removeTextChangeListener(this);
+			content = widget.getContent();
+			content.addTextChangeListener(this);
+		}
+		if (heights == null)
+			heights = new LineHeights(widget.getLineCount(), widget
+					.getLineHeight());
+		else
+			heights.reset(widget.getLineCount(), widget.getLineHeight());
+		stale = false;
+	}
+
+	/**
+	 * Measures lines in the visible area and corrects their heights. While
+	 * the widget doesn't wrap lines and all lines measured so far have the
+	 * default height, only the height of the whole visible area is checked.
+	 * 
+	 * @param clientHeight
+	 *            height (in pixels) of the widget's visible area
+	 * @return true if the widget doesn't wrap lines and all lines measured so
+	 *         far have the default height, in which case the widget's own
+	 *         pixel scrolling is exact and the index doesn't have to be used
+	 */
+	public boolean measureVisibleLines(int clientHeight) {
+		validate();
+		int lineCount = heights.getLineCount();
+		int defaultHeight = heights.getDefaultHeight();
+		int line = widget.getTopIndex();
+		int y = widget.getLinePixel(line);
+		boolean wrap = widget.getWordWrap();
+		if (!wrap && heights.isUniform()) {
+			int end = Math.min(line + clientHeight
+					/ Math.max(defaultHeight, 1) + 2,
+					lineCount);
+			if (widget.getLinePixel(end) - y == (end - line) * defaultHeight)
+				return true;
+		}
+		while (line < lineCount && y < clientHeight) {
+			/* the bottom of the last line is given for the line count */
+			int nextY = widget.getLinePixel(line + 1);
+			heights.setHeight(line, nextY - y);
+			y = nextY;
+			line++;
+		}
+		return !wrap && heights.isUniform();
+	}
+
+	/**
+	 * 
+	 * @return number of indexed lines
+	 */
+	public int getLineCount() {
+		validate();
+		return heights.getLineCount();
+	}
+
+	/**
+	 * 
+	 * @param line
+	 *            index of a line, from 0 to {@link #getLineCount()}
+	 * @return vertical offset (in pixels) of the top of given line from the
+	 *         top of the document
+	 */
+	public int getOffset(int line) {
+		validate();
+		return heights.getOffset(line);
+	}
+
+	/**
+	 * 
+	 * @return height (in pixels) of the whole document
+	 */
+	public int getTotalHeight() {
+		validate();
+		return heights.getTotalHeight();
+	}
+
+	/**
+	 * 
+	 * @param offset
+	 *            vertical offset (in pixels) from the top of the document
+	 * @return index of the line containing given offset. Offsets beyond the
+	 *         document give its last line.
+	 */
+	public int getLine(int offset) {
+		validate();
+		return heights.getLine(offset);
+	}
+}
@@ -0,0 +1,357 @@
+/*******************************************************************************
+ * Copyright (c) 2009 Mateusz Matela.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Mateusz Matela - initial API and implementation
+ *******************************************************************************/
+package org.matela.eclipsemmbscroller;
+
+import org.eclipse.jface.text.BadLocationException;
+import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.IDocumentExtension3;
+import org.eclipse.jface.text.IDocumentExtension4;
+import org.eclipse.jface.text.IRegion;
+import org.eclipse.jface.text.ITypedRegion;
+import org.eclipse.jface.text.Region;
+import org.eclipse.jface.text.TextPresentation;
+import org.eclipse.jface.text.TextUtilities;
+import org.eclipse.jface.text.TextViewer;
+import org.eclipse.jface.text.presentation.IPresentationReconciler;
+import org.eclipse.jface.text.presentation.IPresentationReconcilerExtension;
+import org.eclipse.jface.text.presentation.IPresentationRepairer;
+import org.eclipse.jface.text.source.ISourceViewer;
+import org.eclipse.jface.text.source.SourceViewerConfiguration;
+import org.eclipse.swt.custom.StyledText;
+import org.eclipse.swt.widgets.Display;
+
+/**
+ * Computes presentation (syntax highlighting) of the lines that are about to
+ * come into view and have no presentation yet, so that they are styled before
+ * they are shown. The region ahead of the visible area, in the direction of
+ * scrolling, grows with the scrolling speed. It is processed in chunks of
+ * limited size, each run separately between frames, so no frame waits for
+ * the whole region.
+ * <p>
+ * Presentation is created by the repairers of a presentation reconciler
+ * obtained from the editor's {@link SourceViewerConfiguration}, the same way
+ * the viewer's own reconciler repairs damaged text, and applied directly to
+ * the viewer. The viewer's text listeners are not notified. The reconciler is
+ * created once for every widget and never installed, so it doesn't listen to
+ * the viewer. If the configuration is unknown or has no reconciler, nothing
+ * is prepared.
+ * <p>
+ * Lines that have styles or have already been repaired are skipped. The
+ * repaired lines are remembered for every widget as one range, which is
+ * forgotten when the document or the widget's content changes.
+ * 
+ * @author Mateusz Matela
+ */
+class PresentationWarmer implements Runnable {
+
+	/**
+	 * Time (in milliseconds) of scrolling for which presentation is prepared
+	 * in advance
+	 */
+	private static final int LOOK_AHEAD_TIME = 500;
+
+	/**
+	 * The greatest number of lines prepared in advance
+	 */
+	private static final int MAX_LOOK_AHEAD_LINES = 2000;
+
+	/**
+	 * Number of lines invalidated at once
+	 */
+	private static final int CHUNK_LINES = 100;
+
+	/**
+	 * Initial capacity of created presentations, enough for a chunk of lines
+	 */
+	private static final int PRESENTATION_CAPACITY = 1000;
+
+	private static final String STATE_KEY = Activator.PLUGIN_ID
+			+ ".presentationWarmer";
+
+	/**
+	 * Warming state of a widget, kept in the widget's data
+	 */
+	private static class WidgetState {
+
+		/**
+		 * The reconciler created for the widget or null if there's none
+		 */
+		IPresentationReconciler reconciler;
+
+		/**
+		 * The repaired lines are valid only as long as the document's
+		 * modification stamp and the widget's character count are the same
+		 */
+		long modificationStamp;
+
+		int charCount;
+
+		/**
+		 * The range of repaired lines, empty if first > last
+		 */
+		int firstRepaired, lastRepaired = -1;
+	}
+
+	private final Display display;
+
+	private TextViewer viewer;
+
+	private IPresentationReconciler reconciler;
+
+	private StyledText widget;
+
+	private WidgetState state;
+
+	/**
+	 * 1 for scrolling down, -1 for scrolling up, 0 if nothing has been
+	 * prepared yet
+	 */
+	private int direction;
+
+	/**
+	 * The first line in the direction of scrolling whose presentation hasn't
+	 * been prepared yet
+	 */
+	private int frontier;
+
+	/**
+	 * The last line in the direction of scrolling that should be prepared
+	 */
+	private int goal;
+
+	private boolean pending;
+
+	/**
+	 * Number of lines in the visible area. Resizing the widget ends the
+	 * scrolling, so it's computed only once.
+	 */
+	private int pageLines;
+
+	public PresentationWarmer(Display display) {
+		this.display = display;
+	}
+
+	/**
+	 * Starts preparing presentation for given viewer
+	 * 
+	 * @param viewer
+	 *            the viewer of the scrolled widget or null if the widget has no
+	 *            known viewer
+	 * @param configuration
+	 *            the configuration of the viewer or null if it's unknown
+	 */
+	public void start(TextViewer viewer,
+			SourceViewerConfiguration configuration) {
+		stop();
+		if (viewer == null)
+			return;
+		StyledText textWidget = viewer.getTextWidget();
+		WidgetState widgetState = (WidgetState) textWidget.getData(STATE_KEY);
+		if (widgetState == null) {
+			widgetState = new WidgetState();
+			if (configuration != null && viewer instanceof ISourceViewer)
+				widgetState.reconciler = configuration
+						.getPresentationReconciler((ISourceViewer) viewer);
+			textWidget.setData(STATE_KEY, widgetState);
+		}
+		if (widgetState.reconciler == null)
+			return;
+		this.viewer = viewer;
+		widget = textWidget;
+		state = widgetState;
+		reconciler = widgetState.reconciler;
+		direction = 0;
+		pageLines = widget.getClientArea().height / widget.getLineHeight() + 1;
+		long modificationStamp = getModificationStamp();
+		if (modificationStamp == IDocumentExtension4.UNKNOWN_MODIFICATION_STAMP
+				|| modificationStamp != state.modificationStamp
+				|| widget.getCharCount() != state.charCount) {
+			state.modificationStamp = modificationStamp;
+			state.charCount = widget.getCharCount();
+			state.firstRepaired = 0;
+			state.lastRepaired = -1;
+		}
+	}
+
+	/**
+	 * Stops preparing presentation. A chunk already scheduled does nothing.
+	 */
+	public void stop() {
+		viewer = null;
+		reconciler = null;
+		widget = null;
+		state = null;
+	}
+
+	/**
+	 * Forgets the warming state of given widget
+	 * 
+	 * @param widget
+	 *            the widget that is no longer scrolled
+	 */
+	public static void remove(StyledText widget) {
+		widget.setData(STATE_KEY, null);
+	}
+
+	private long getModificationStamp() {
+		IDocument document = viewer.getDocument();
+		if (document instanceof IDocumentExtension4)
+			return ((IDocumentExtension4) document).getModificationStamp();
+		return IDocumentExtension4.UNKNOWN_MODIFICATION_STAMP;
+	}
+
+	/**
+	 * Extends the region to prepare according to the current speed and
+	 * schedules the next chunk if necessary. Called after every frame.
+	 * 
+	 * @param verticalSpeed
+	 *            scrolling speed in pixels per millisecond
+	 */
+	public void scrolled(double verticalSpeed) {
+		if (widget == null || widget.isDisposed() || verticalSpeed == 0)
+			return;
+		int newDirection = verticalSpeed > 0 ? 1 : -1;
+		int lineHeight = widget.getLineHeight();
+		int topLine = widget.getTopIndex();
+		int edge = newDirection > 0 ? topLine + pageLines : topLine - 1;
+		if (newDirection != direction || isBefore(frontier, edge)) {
+			/* the visible area has overtaken the prepared region */
+			direction = newDirection;
+			frontier = edge;
+		}
+		int lookAhead = (int) Math.min(Math.abs(verticalSpeed)
+				* LOOK_AHEAD_TIME / lineHeight, MAX_LOOK_AHEAD_LINES);
+		lookAhead = Math.max(lookAhead, pageLines);
+		goal = Math.max(0, Math.min(edge + direction * lookAhead, widget
+				.getLineCount() - 1));
+		if (!pending && !isBefore(goal, frontier)) {
+			pending = true;
+			/* unlike asyncExec(), doesn't wrap this runnable in a new object */
+			display.timerExec(0, this);
+		}
+	}
+
+	/**
+	 * Prepares presentation of the next chunk of lines
+	 */
+	public void run() {
+		pending = false;
+		if (widget == null || widget.isDisposed() || isBefore(goal, frontier))
+			return;
+		int last = frontier + direction * (CHUNK_LINES - 1);
+		if (isBefore(goal, last))
+			last = goal;
+		prepare(Math.min(frontier, last), Math.max(frontier, last));
+		frontier = last + direction;
+		if (!isBefore(goal, frontier)) {
+			pending = true;
+			display.timerExec(0, this);
+		}
+	}
+
+	/**
+	 * 
+	 * @return true if a chunk is scheduled
+	 */
+	boolean isPending() {
+		return pending;
+	}
+
+	/**
+	 * 
+	 * @return true if line a comes before line b in the direction of
+	 *         scrolling
+	 */
+	private boolean isBefore(int a, int b) {
+		return direction > 0 ? a < b : a > b;
+	}
+
+	/**
+	 * Repairs presentation of the runs of lines in given range that have
+	 * neither any style nor have been repaired already, and remembers the
+	 * range as repaired
+	 */
+	private void prepare(int firstLine, int lastLine) {
+		int lineCount = widget.getLineCount();
+		if (firstLine < 0 || firstLine >= lineCount)
+			return;
+		lastLine = Math.min(lastLine, lineCount - 1);
+		if (getModificationStamp() != state.modificationStamp
+				|| widget.getCharCount() != state.charCount)
+			return;
+		int runStart = -1;
+		int offset = widget.getOffsetAtLine(firstLine);
+		for (int line = firstLine; line <= lastLine; line++) {
+			int end = line + 1 < lineCount ? widget.getOffsetAtLine(line + 1)
+					: widget.getCharCount();
+			if ((line >= state.firstRepaired && line <= state.lastRepaired)
+					|| widget.getRanges(offset, end - offset).length > 0) {
+				if (runStart >= 0)
+					repair(runStart, offset);
+				runStart = -1;
+			} else if (runStart < 0) {
+				runStart = offset;
+			}
+			offset = end;
+		}
+		if (runStart >= 0)
+			repair(runStart, offset);
+		if (state.firstRepaired > state.lastRepaired
+				|| lastLine < state.firstRepaired - 1
+				|| firstLine > state.lastRepaired + 1) {
+			/* not adjacent, the region ahead is more useful */
+			state.firstRepaired = firstLine;
+			state.lastRepaired = lastLine;
+		} else {
+			state.firstRepaired = Math.min(state.firstRepaired, firstLine);
+			state.lastRepaired = Math.max(state.lastRepaired, lastLine);
+		}
+	}
+
+	/**
+	 * Creates presentation of given widget range with the reconciler's
+	 * repairers and applies it to the viewer. The reconciler isn't installed,
+	 * so the repairers are given the document before they're used.
+	 */
+	private void repair(int start, int end) {
+		if (end <= start)
+			return;
+		IRegion region = viewer.widgetRange2ModelRange(new Region(start, end
+				- start));
+		IDocument document = viewer.getDocument();
+		if (region == null || document == null)
+			return;
+		String partitioning = IDocumentExtension3.DEFAULT_PARTITIONING;
+		if (reconciler instanceof IPresentationReconcilerExtension)
+			partitioning = ((IPresentationReconcilerExtension) reconciler)
+					.getDocumentPartitioning();
+		TextPresentation presentation = new TextPresentation(region,
+				PRESENTATION_CAPACITY);
+		try {
+			ITypedRegion[] partitions = TextUtilities.computePartitioning(
+					document, partitioning, region.getOffset(), region
+							.getLength(), false);
+			for (int i = 0; i < partitions.length; i++) {
+				IPresentationRepairer repairer = reconciler
+						.getRepairer(partitions[i].getType());
+				if (repairer != null) {
+					repairer.setDocument(document);
+					repairer.createPresentation(presentation, partitions[i]);
+				}
+			}
+		} catch (BadLocationException e) {
+			/* the document has changed, scrolling will stop anyway */
+			return;
+		}
+		if (!presentation.isEmpty())
+			viewer.changeTextPresentation(presentation, false);
+	}
+}
@@ -0,0 +1,83 @@
+/*******************************************************************************
+ * Copyright (c) 2009 Mateusz Matela.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Mateusz Matela - initial API and implementation
+ *******************************************************************************/
+package org.matela.eclipsemmbscroller;
+
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.widgets.Composite;
+import org.eclipse.swt.widgets.Event;
+import org.eclipse.swt.widgets.ScrollBar;
+
+/**
+ * Moves the visible area of a custom scrolled composite, like
+ * {@link org.eclipse.swt.custom.ScrolledComposite} or a drawing canvas, by
+ * changing its scroll bars and notifying their selection listeners, as if the
+ * user was dragging them. One line is one increment of the vertical scroll
+ * bar.
+ * 
+ * @author Mateusz Matela
+ */
+class ScrollBarTarget extends ControlTarget {
+
+	private final ScrollBar verticalBar;
+
+	private final ScrollBar horizontalBar;
+
+	/**
+	 * The selection event, reused in every frame
+	 */
+	private final Event event = new Event();
+
+	public ScrollBarTarget(Composite composite) {
+		super(composite);
+		verticalBar = composite.getVerticalBar();
+		horizontalBar = composite.getHorizontalBar();
+	}
+
+	public int getLineHeight() {
+		if (verticalBar == null)
+			return 1;
+		return Math.max(1, verticalBar.getIncrement());
+	}
+
+	public int getLineCount() {
+		if (verticalBar == null)
+			return 0;
+		return verticalBar.getMaximum() / getLineHeight();
+	}
+
+	public int getTopLine() {
+		if (verticalBar == null)
+			return 0;
+		return verticalBar.getSelection() / getLineHeight();
+	}
+
+	public void scrollPixels(int horizontal, int vertical) {
+		move(horizontalBar, horizontal);
+		move(verticalBar, vertical);
+	}
+
+	public void scrollLines(int horizontal, int lines) {
+		move(horizontalBar, horizontal);
+		move(verticalBar, lines * getLineHeight());
+	}
+
+	private void move(ScrollBar bar, int distance) {
+		if (bar == null || distance == 0)
+			return;
+		int selection = bar.getSelection();
+		bar.setSelection(selection + distance);
+		if (bar.getSelection() == selection)
+			return;
+		event.detail = SWT.DRAG;
+		event.doit = true;
+		bar.notifyListeners(SWT.Selection, event);
+	}
+}
@@ -0,0 +1,703 @@
+/*******************************************************************************
+ * Copyright (c) 2009 Mateusz Matela.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Mateusz Matela - initial API and implementation
+ *******************************************************************************/
+package org.matela.eclipsemmbscroller;
+
+/**
+ * Calculates scrolling speed from the position of the mouse cursor and moves
+ * the visible area of the scrolled target in frames. The engine doesn't
+ * schedule frames by itself: the driver calls {@link #tick()} after the delay
+ * returned by the previous call. When the cursor is in the dead zone the
+ * engine parks and the driver calls {@link #wake()} when the cursor moves, so
+ * no frames are executed while nothing is scrolled. Together with pluggable
+ * {@link CursorSource},
+ * {@link FrameClock} and {@link ScrollTarget} this makes it possible to run the
+ * engine without a display.
+ * <p>
+ * In jump mode (see {@link #startJump}) the cursor doesn't set the speed but
+ * the position: its vertical distance from the initial location maps
+ * proportionally to a line of the document, as if the scroll bar was dragged.
+ * The target is moved only when the cursor rests for a moment or, during a
+ * long move, once in a while, so intermediate positions are not rendered.
+ * 
+ * @author Mateusz Matela
+ */
+public class ScrollEngine {
+
+	/**
+	 * The longest period of time that can be made up for in one step after
+	 * the GUI thread has been busy
+	 */
+	private static final int MAX_COALESCED_TIME = 250;
+
+	/**
+	 * The greatest part of GUI thread's time that can be spent on scrolling.
+	 * If moving and repainting the target takes longer, frames are made less
+	 * often and the steps are longer. The rest is left for other work, such
+	 * as preparing presentation of lines ahead.
+	 */
+	private static final double UI_TIME_BUDGET = 0.5;
+
+	/**
+	 * Returned instead of a delay when scrolling has been stopped or the
+	 * target has been disposed
+	 */
+	public static final int STOPPED = -1;
+
+	/**
+	 * Returned instead of a delay when the target doesn't move. No frame
+	 * should be scheduled until the cursor moves, see {@link #wake()}.
+	 */
+	public static final int PARKED = -2;
+
+	/**
+	 * Time (in milliseconds) in which speed of momentum scrolling decreases
+	 * <i>e</i> times
+	 */
+	private static final double MOMENTUM_TIME_CONSTANT = 325;
+
+	/**
+	 * Speed (in pixels per millisecond) below which momentum scrolling stops
+	 */
+	private static final double MOMENTUM_MIN_SPEED = 0.02;
+
+	/**
+	 * Time (in milliseconds) the cursor has to rest before the target jumps
+	 * to its position
+	 */
+	private static final int JUMP_SETTLE_TIME = 60;
+
+	/**
+	 * The longest time (in milliseconds) between jumps while the cursor keeps
+	 * moving
+	 */
+	private static final int JUMP_PREVIEW_INTERVAL = 200;
+
+	/**
+	 * Delay (in milliseconds) of the next jump if the target has moved only
+	 * part of the way, like a tree moving by one page at a time
+	 */
+	private static final int JUMP_STEP_INTERVAL = 16;
+
+	private final CursorSource cursor;
+
+	private final FrameClock clock;
+
+	private final int[] location = new int[2];
+
+	private ScrollTarget target;
+
+	private boolean fixedRate;
+
+	private double frameInterval;
+
+	private boolean turbo;
+
+	private int deadZone;
+
+	private AccelerationProfile profile = AccelerationProfile.DEFAULT;
+
+	private boolean momentum;
+
+	/**
+	 * True if the button has been released and scrolling continues with
+	 * decaying speed
+	 */
+	private boolean coasting;
+
+	private boolean parked;
+
+	private int horizontalScrollDistance = 1;
+
+	private int verticalScrollDistance = 0;
+
+	private int sleepTime = 0;
+
+	private double frameDeadline;
+
+	private double verticalSpeed;
+
+	private double horizontalSpeed;
+
+	private double verticalRemainder;
+
+	private double horizontalRemainder;
+
+	private double lineRemainder;
+
+	private int initialX, initialY;
+
+	private int currentX, currentY;
+
+	private boolean scrollStarted;
+
+	private long nextTickTime;
+
+	private long lastTickTime;
+
+	private int scheduledInterval;
+
+	private long coalescedFrames;
+
+	/**
+	 * True if the next frame is executed right after {@link #wake()}, so it
+	 * wasn't scheduled and its timing is not measured
+	 */
+	private boolean woken;
+
+	/**
+	 * Average time (in milliseconds) of moving and repainting the target.
+	 * Work the driver does for the frame after {@link #tick()} returns isn't
+	 * included.
+	 */
+	private double frameCost;
+
+	private boolean throttled;
+
+	private boolean jumping;
+
+	/**
+	 * Vertical locations of the cursor that correspond to the beginning and
+	 * the end of the document in jump mode
+	 */
+	private int jumpTop, jumpBottom;
+
+	/**
+	 * The top line at the beginning of jump mode scrolling
+	 */
+	private int startLine;
+
+	/**
+	 * The line the target has been moved to in jump mode
+	 */
+	private int jumpLine;
+
+	private long lastMoveTime;
+
+	private long lastJumpTime;
+
+	/**
+	 * 
+	 * @param cursor
+	 *            the source of cursor location
+	 * @param clock
+	 *            the clock measuring time of frames
+	 */
+	public ScrollEngine(CursorSource cursor, FrameClock clock) {
+		this.cursor = cursor;
+		this.clock = clock;
+	}
+
+	/**
+	 * Sets the rate of frames. Takes effect at the next {@link #start}.
+	 * 
+	 * @param frameRate
+	 *            number of frames per second, or 0 to make steps of about one
+	 *            pixel with variable interval
+	 */
+	public void setFrameRate(int frameRate) {
+		fixedRate = frameRate > 0;
+		frameInterval = fixedRate ? 1000.0 / frameRate : 0;
+	}
+
+	/**
+	 * 
+	 * @param turbo
+	 *            true if at high speeds the target should be moved by whole
+	 *            lines
+	 */
+	public void setTurbo(boolean turbo) {
+		this.turbo = turbo;
+	}
+
+	/**
+	 * 
+	 * @param deadZone
+	 *            the distance (in pixels) from the initial location within
+	 *            which the cursor doesn't cause scrolling
+	 */
+	public void setDeadZone(int deadZone) {
+		this.deadZone = deadZone;
+	}
+
+	/**
+	 * 
+	 * @param profile
+	 *            the profile mapping distance of the cursor to scrolling speed
+	 */
+	public void setProfile(AccelerationProfile profile) {
+		this.profile = profile;
+	}
+
+	/**
+	 * 
+	 * @param momentum
+	 *            true if scrolling should continue with decaying speed after
+	 *            {@link #release()}
+	 */
+	public void setMomentum(boolean momentum) {
+		this.momentum = momentum;
+	}
+
+	/**
+	 * Starts scrolling given target
+	 * 
+	 * @param target
+	 *            the target to scroll
+	 * @param x
+	 *            horizontal location of the cursor at the beginning of the
+	 *            scrolling
+	 * @param y
+	 *            vertical location of the cursor at the beginning of the
+	 *            scrolling
+	 * @return {@link #PARKED}, as the cursor is in the dead zone at the
+	 *         beginning
+	 */
+	public int start(ScrollTarget target, int x, int y) {
+		this.target = target;
+		initialX = currentX = x;
+		initialY = currentY = y;
+		scrollStarted = false;
+		coasting = false;
+		resetScrollingSpeed();
+		long now = clock.currentTimeMillis();
+		lastTickTime = now;
+		woken = false;
+		frameCost = 0;
+		throttled = false;
+		parked = true;
+		jumping = false;
+		return PARKED;
+	}
+
+	/**
+	 * Starts scrolling given target in jump mode. Moving the cursor from the
+	 * dead zone up to <code>top</code> shows the beginning of the document,
+	 * moving it down to <code>bottom</code> shows the end. Locations in
+	 * between map linearly to lines between the initial top line and the
+	 * document's ends.
+	 * 
+	 * @param target
+	 *            the target to scroll
+	 * @param x
+	 *            horizontal location of the cursor at the beginning of the
+	 *            scrolling
+	 * @param y
+	 *            vertical location of the cursor at the beginning of the
+	 *            scrolling
+	 * @param top
+	 *            the vertical location corresponding to the first line
+	 * @param bottom
+	 *            the vertical location corresponding to the last line
+	 * @return {@link #PARKED}, as the cursor is in the dead zone at the
+	 *         beginning
+	 */
+	public int startJump(ScrollTarget target, int x, int y, int top,
+			int bottom) {
+		int result = start(target, x, y);
+		jumping = true;
+		jumpTop = top;
+		jumpBottom = bottom;
+		startLine = jumpLine = target.getTopLine();
+		lastJumpTime = lastMoveTime = lastTickTime;
+		return result;
+	}
+
+	/**
+	 * Executes a frame of the parked engine at once, because the cursor has
+	 * moved. Time spent parked is not made up for.
+	 * 
+	 * @return the same as {@link #tick()}
+	 */
+	public int wake() {
+		if (target == null)
+			return STOPPED;
+		long now = clock.currentTimeMillis();
+		lastTickTime = nextTickTime = now;
+		frameDeadline = now;
+		woken = true;
+		return tick();
+	}
+
+	/**
+	 * Stops scrolling. In jump mode a move to the current location of the
+	 * cursor that hasn't been made yet is discarded, as the session has been
+	 * cancelled.
+	 */
+	public void stop() {
+		jumping = false;
+		target = null;
+		coasting = false;
+		parked = false;
+	}
+
+	/**
+	 * Called when the button is released. If momentum is enabled and the
+	 * target is moving, scrolling continues with the last speed, decaying in
+	 * following frames. The cursor is ignored from now on. Otherwise scrolling
+	 * is stopped. In jump mode the target is moved to the final location of
+	 * the cursor and scrolling is stopped.
+	 * 
+	 * @return true if scrolling continues
+	 */
+	public boolean release() {
+		if (target == null)
+			return false;
+		if (jumping && !target.isDisposed()) {
+			cursor.getLocation(location);
+			currentY = location[1];
+			int goal = getJumpGoal();
+			if (goal != jumpLine)
+				jump(goal, clock.currentTimeMillis());
+		}
+		if (jumping || !momentum || (verticalSpeed == 0 && horizontalSpeed == 0)) {
+			stop();
+			return false;
+		}
+		coasting = true;
+		return true;
+	}
+
+	/**
+	 * Executes one frame: reads the cursor location (or decays the speed after
+	 * release), updates the speed and moves the target.
+	 * 
+	 * @return the delay (in milliseconds) after which this method should be
+	 *         called again, {@link #PARKED} if the target doesn't move or
+	 *         {@link #STOPPED} if scrolling has been stopped or the target has
+	 *         been disposed
+	 */
+	public int tick() {
+		if (target == null)
+			return STOPPED;
+		if (target.isDisposed()) {
+			stop();
+			return STOPPED;
+		}
+		long now = clock.currentTimeMillis();
+		long tickLateness = now - nextTickTime;
+		/* a clock that isn't monotonic could make it negative */
+		long elapsed = Math.max(now - lastTickTime, 0);
+		lastTickTime = now;
+		int missedFrames = 0;
+		if (woken) {
+			woken = false;
+		} else {
+			missedFrames = (int) (elapsed / Math.max(scheduledInterval, 1)) - 1;
+			if (missedFrames > 0)
+				coalescedFrames += missedFrames;
+			ScrollStatistics statistics = ScrollStatistics.getDefault();
+			if (statistics != null)
+				statistics.frameExecuted(tickLateness, Math.abs(elapsed
+						- scheduledInterval), missedFrames);
+		}
+		elapsed = Math.min(elapsed, MAX_COALESCED_TIME);
+
+		if (jumping)
+			return tickJump(now);
+
+		if (coasting) {
+			double decay = Math.exp(-elapsed / MOMENTUM_TIME_CONSTANT);
+			double verticalSpeed = this.verticalSpeed * decay;
+			double horizontalSpeed = this.horizontalSpeed * decay;
+			if (Math.abs(verticalSpeed) < MOMENTUM_MIN_SPEED
+					&& Math.abs(horizontalSpeed) < MOMENTUM_MIN_SPEED) {
+				stop();
+				return STOPPED;
+			}
+			recalculateScrollingSpeed(verticalSpeed, horizontalSpeed);
+		} else {
+			readCursor();
+			if (verticalSpeed == 0 && horizontalSpeed == 0) {
+				parked = true;
+				return PARKED;
+			}
+		}
+		parked = false;
+
+		/*
+		 * if the GUI thread was busy and some frames were missed, the distance
+		 * they would cover is made up for in this frame
+		 */
+		int vertical, horizontal;
+		if (fixedRate) {
+			verticalRemainder += verticalSpeed * elapsed;
+			horizontalRemainder += horizontalSpeed * elapsed;
+			vertical = (int) verticalRemainder;
+			horizontal = (int) horizontalRemainder;
+			verticalRemainder -= vertical;
+			horizontalRemainder -= horizontal;
+		} else if (missedFrames > 0 || throttled) {
+			vertical = (int) Math.round(verticalSpeed * elapsed);
+			horizontal = (int) Math.round(horizontalSpeed * elapsed);
+		} else {
+			vertical = verticalScrollDistance;
+			horizontal = horizontalScrollDistance;
+		}
+
+		int lineHeight = target.getLineHeight();
+		if (turbo && ScrollSpeedCurve.isTurboSpeed(verticalSpeed / lineHeight)) {
+			verticalRemainder = 0;
+			scrollByLines(elapsed, lineHeight, horizontal);
+		} else {
+			lineRemainder = 0;
+			scrollBy(vertical, horizontal);
+		}
+		target.update();
+		frameCost = 0.8 * frameCost + 0.2 * (clock.currentTimeMillis() - now);
+
+		if (fixedRate)
+			return scheduleNextFrame(now);
+		int budgetDelay = (int) Math.ceil(frameCost * (1 - UI_TIME_BUDGET)
+				/ UI_TIME_BUDGET);
+		throttled = budgetDelay > sleepTime;
+		return schedule(Math.max(sleepTime, budgetDelay));
+	}
+
+	private void readCursor() {
+		cursor.getLocation(location);
+		if (location[0] == currentX && location[1] == currentY)
+			return;
+		currentX = location[0];
+		currentY = location[1];
+		double verticalSpeed = profile.getSpeed(currentY - initialY, deadZone);
+		double horizontalSpeed = profile.getSpeed(currentX - initialX,
+				deadZone);
+		if (verticalSpeed != 0 || horizontalSpeed != 0) {
+			recalculateScrollingSpeed(verticalSpeed, horizontalSpeed);
+		} else {
+			resetScrollingSpeed();
+		}
+	}
+
+	/**
+	 * Executes a frame in jump mode. While the cursor moves, the target jumps
+	 * at most once per {@link #JUMP_PREVIEW_INTERVAL}. The frame after the
+	 * cursor has rested for {@link #JUMP_SETTLE_TIME} jumps to its final
+	 * location, and the engine parks once the target is there.
+	 */
+	private int tickJump(long now) {
+		cursor.getLocation(location);
+		if (location[0] != currentX || location[1] != currentY) {
+			currentX = location[0];
+			currentY = location[1];
+			lastMoveTime = now;
+		}
+		if (Math.abs(currentY - initialY) > deadZone)
+			scrollStarted = true;
+		int goal = getJumpGoal();
+		if (goal == jumpLine) {
+			verticalSpeed = 0;
+			parked = true;
+			return PARKED;
+		}
+		parked = false;
+		long sinceMove = now - lastMoveTime;
+		long sinceJump = now - lastJumpTime;
+		if (sinceMove < JUMP_SETTLE_TIME && sinceJump < JUMP_PREVIEW_INTERVAL)
+			return schedule((int) Math.min(JUMP_SETTLE_TIME - sinceMove,
+					JUMP_PREVIEW_INTERVAL - sinceJump));
+		jump(goal, now);
+		return schedule(jumpLine == goal ? JUMP_SETTLE_TIME
+				: JUMP_STEP_INTERVAL);
+	}
+
+	/**
+	 * 
+	 * @return the line the cursor's current location maps to in jump mode
+	 */
+	private int getJumpGoal() {
+		int distance = currentY - initialY;
+		int lastLine = Math.max(target.getLineCount() - 1, 0);
+		if (Math.abs(distance) <= deadZone)
+			return startLine;
+		if (distance > 0) {
+			int range = Math.max(1, jumpBottom - initialY - deadZone);
+			return startLine
+					+ (int) ((long) Math.max(lastLine - startLine, 0)
+							* Math.min(distance - deadZone, range) / range);
+		}
+		int range = Math.max(1, initialY - jumpTop - deadZone);
+		return startLine
+				- (int) ((long) startLine
+						* Math.min(-distance - deadZone, range) / range);
+	}
+
+	/**
+	 * Moves the target to given line in jump mode. Speed of the jump is
+	 * remembered, so that the driver can treat it like very fast scrolling.
+	 */
+	private void jump(int goal, long now) {
+		int top = target.getTopLine();
+		int lines = goal - top;
+		int lineHeight = target.getLineHeight();
+		target.scrollLines(0, lines);
+		target.update();
+		verticalSpeed = (double) lines * lineHeight
+				/ Math.max(now - lastJumpTime, 1);
+		lastJumpTime = now;
+		int newTop = target.getTopLine();
+		/*
+		 * a target that hasn't moved at all can't get any closer, one that has
+		 * moved part of the way will be moved again
+		 */
+		jumpLine = newTop == top ? goal : newTop;
+		ScrollStatistics statistics = ScrollStatistics.getDefault();
+		if (statistics != null)
+			statistics.scrolled(Math.abs(lines * lineHeight));
+	}
+
+	/**
+	 * Scrolls by whole lines in turbo mode. The speed above the threshold is
+	 * multiplied according to the document's length, so that crossing even a
+	 * very long document takes only a few seconds.
+	 */
+	private void scrollByLines(long elapsed, int lineHeight, int horizontal) {
+		double lineSpeed = ScrollSpeedCurve.getTurboSpeed(verticalSpeed
+				/ lineHeight, target.getLineCount());
+		lineRemainder += lineSpeed * elapsed;
+		int lines = (int) lineRemainder;
+		lineRemainder -= lines;
+		if (lines == 0 && horizontal == 0)
+			return;
+
+		target.scrollLines(horizontal, lines);
+		ScrollStatistics statistics = ScrollStatistics.getDefault();
+		if (statistics != null)
+			statistics.scrolled(Math.abs(lines * lineHeight)
+					+ Math.abs(horizontal));
+	}
+
+	private void scrollBy(int vertical, int horizontal) {
+		if (vertical == 0 && horizontal == 0)
+			return;
+		target.scrollPixels(horizontal, vertical);
+		ScrollStatistics statistics = ScrollStatistics.getDefault();
+		if (statistics != null)
+			statistics.scrolled(Math.abs(vertical) + Math.abs(horizontal));
+	}
+
+	/**
+	 * Schedules the next tick of the variable interval mode.
+	 */
+	private int schedule(int delay) {
+		nextTickTime = clock.currentTimeMillis() + delay;
+		scheduledInterval = Math.max(delay, 1);
+		return delay;
+	}
+
+	/**
+	 * Schedules the next frame of the fixed rate mode. Frames are aligned to
+	 * deadlines spaced by exactly one frame interval so that rounding of timer
+	 * delays doesn't accumulate. If the GUI thread has fallen behind, the
+	 * deadlines are moved forward instead of trying to catch up. If frames are
+	 * too expensive for the time budget, the interval is extended.
+	 */
+	private int scheduleNextFrame(long now) {
+		double interval = Math.max(frameInterval, frameCost / UI_TIME_BUDGET);
+		frameDeadline += interval;
+		if (frameDeadline < now)
+			frameDeadline = now;
+		int delay = (int) Math.round(frameDeadline - now);
+		nextTickTime = now + delay;
+		scheduledInterval = (int) Math.max(Math.round(interval), 1);
+		return delay;
+	}
+
+	private void recalculateScrollingSpeed(double verticalSpeed,
+			double horizontalSpeed) {
+		this.verticalSpeed = verticalSpeed;
+		this.horizontalSpeed = horizontalSpeed;
+		sleepTime = ScrollSpeedCurve.getInterval(verticalSpeed,
+				horizontalSpeed);
+
+		verticalScrollDistance = (int) Math.round(sleepTime * verticalSpeed);
+		horizontalScrollDistance = (int) Math.round(sleepTime
+				* horizontalSpeed);
+
+		scrollStarted = true;
+	}
+
+	private void resetScrollingSpeed() {
+		horizontalScrollDistance = verticalScrollDistance = 0;
+		horizontalSpeed = verticalSpeed = 0;
+		horizontalRemainder = verticalRemainder = lineRemainder = 0;
+		sleepTime = 0;
+	}
+
+	/**
+	 * 
+	 * @return true if a target is being scrolled
+	 */
+	public boolean isActive() {
+		return target != null;
+	}
+
+	/**
+	 * 
+	 * @return true if visible area has been moved since the last start of the
+	 *         scrolling.
+	 */
+	public boolean isScrollStarted() {
+		return scrollStarted;
+	}
+
+	/**
+	 * 
+	 * @return true if the target doesn't move and the engine waits for the
+	 *         cursor to move
+	 */
+	public boolean isParked() {
+		return parked;
+	}
+
+	/**
+	 * 
+	 * @return true if the button has been released and the target keeps
+	 *         moving with decaying speed
+	 */
+	public boolean isCoasting() {
+		return coasting;
+	}
+
+	/**
+	 * 
+	 * @return true if the cursor's location maps to a position in the
+	 *         document
+	 */
+	public boolean isJumping() {
+		return jumping;
+	}
+
+	/**
+	 * 
+	 * @return current vertical scrolling speed in pixels per millisecond
+	 */
+	public double getVerticalSpeed() {
+		return verticalSpeed;
+	}
+
+	/**
+	 * 
+	 * @return current horizontal scrolling speed in pixels per millisecond
+	 */
+	public double getHorizontalSpeed() {
+		return horizontalSpeed;
+	}
+
+	/**
+	 * 
+	 * @return the number of frames that were missed because the GUI thread
+	 *         was busy and whose distance was added to the following frames
+	 */
+	public long getCoalescedFrames() {
+		return coalescedFrames;
+	}
+}
@@ -0,0 +1,137 @@
+/*******************************************************************************
+ * Copyright (c) 2009 Mateusz Matela.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Mateusz Matela - initial API and implementation
+ *******************************************************************************/
+package org.matela.eclipsemmbscroller;
+
+/**
+ * Calculations of scrolling speed. Speed depends on the distance between the
+ * current position of the mouse cursor and the position where scrolling has
+ * started. All speeds are expressed in pixels (or lines) per millisecond and
+ * are negative for scrolling up or left.
+ * 
+ * @author Mateusz Matela
+ */
+public class ScrollSpeedCurve {
+
+	private static final double SCROLL_SPEED = 0.005;
+
+	private static final double SCROLL_FACTOR_LINEAR = 0.6;
+
+	private static final double SCROLL_FACTOR_SQUARE = 0.012;
+
+	/**
+	 * The shortest interval between steps of scrolling with variable interval
+	 */
+	public static final int MIN_SCROLL_INTERVAL = 30;
+
+	/**
+	 * Scrolling speed (in lines per second) above which turbo scrolling moves
+	 * by whole lines
+	 */
+	public static final int TURBO_THRESHOLD = 100;
+
+	/**
+	 * Number of lines in a document for which turbo scrolling isn't
+	 * accelerated. In longer documents speed above the threshold grows
+	 * proportionally to the number of lines.
+	 */
+	public static final int TURBO_REFERENCE_LINES = 1000;
+
+	private ScrollSpeedCurve() {
+	}
+
+	/**
+	 * The default curve of scrolling speed. Scrolling uses it through the
+	 * table of {@link AccelerationProfile#QUADRATIC} profile.
+	 * 
+	 * @param distance
+	 *            the distance (in pixels) of the cursor from the point where
+	 *            scrolling has started, along one axis
+	 * @param deadZone
+	 *            the distance within which scrolling doesn't happen
+	 * @return scrolling speed along the same axis
+	 */
+	public static double getSpeed(int distance, int deadZone) {
+		double value = absDec(distance, deadZone);
+		return SCROLL_SPEED
+				* (SCROLL_FACTOR_LINEAR * value + SCROLL_FACTOR_SQUARE
+						* absSqr(value));
+	}
+
+	/**
+	 * 
+	 * @param verticalSpeed
+	 *            vertical scrolling speed
+	 * @param horizontalSpeed
+	 *            horizontal scrolling speed
+	 * @return the interval (in milliseconds) between steps of scrolling with
+	 *         variable interval, such that the faster direction moves by about
+	 *         one pixel per step, but not shorter than
+	 *         {@link #MIN_SCROLL_INTERVAL}
+	 */
+	public static int getInterval(double verticalSpeed, double horizontalSpeed) {
+		int interval;
+		if (verticalSpeed != 0) {
+			interval = Math.abs((int) Math.round(1.0 / verticalSpeed));
+			if (horizontalSpeed != 0)
+				interval = Math.min(interval, Math.abs((int) Math
+						.round(1.0 / horizontalSpeed)));
+		} else {
+			interval = Math.abs((int) Math.round(1.0 / horizontalSpeed));
+		}
+		return Math.max(interval, MIN_SCROLL_INTERVAL);
+	}
+
+	/**
+	 * 
+	 * @param lineSpeed
+	 *            scrolling speed in lines per millisecond
+	 * @return true if given speed is high enough for turbo scrolling
+	 */
+	public static boolean isTurboSpeed(double lineSpeed) {
+		return Math.abs(lineSpeed) * 1000 >= TURBO_THRESHOLD;
+	}
+
+	/**
+	 * 
+	 * @param lineSpeed
+	 *            scrolling speed in lines per millisecond
+	 * @param lineCount
+	 *            number of lines in the scrolled document
+	 * @return the speed of turbo scrolling in lines per millisecond. The part
+	 *         of the speed above the threshold is multiplied according to the
+	 *         document's length.
+	 */
+	public static double getTurboSpeed(double lineSpeed, int lineCount) {
+		double threshold = TURBO_THRESHOLD / 1000.0;
+		double scale = Math.max(1.0, (double) lineCount
+				/ TURBO_REFERENCE_LINES);
+		double turboSpeed = threshold + (Math.abs(lineSpeed) - threshold)
+				* scale;
+		return lineSpeed < 0 ? -turboSpeed : turboSpeed;
+	}
+
+	private static int absDec(int value, int decrement) {
+		if (value > 0) {
+			value -= decrement;
+			if (value < 0)
+				return 0;
+		} else {
+			value += decrement;
+			if (value > 0)
+				return 0;
+		}
+		return value;
+	}
+
+	private static double absSqr(double value) {
+		return value < 0 ? -value * value : value * value;
+	}
+}
@@ -0,0 +1,291 @@
+/*******************************************************************************
+ * Copyright (c) 2009 Mateusz Matela.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Mateusz Matela - initial API and implementation
+ *******************************************************************************/
+package org.matela.eclipsemmbscroller;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Collects statistics of scrolling. It's enabled only if the
+ * <code>debug/statistics</code> tracing option of the plug-in is set, in which
+ * case it's also registered as a JMX MBean. If <code>debug/statistics/trace
+ * </code> option is set, a summary of every scrolling session is printed to
+ * the console.
+ * <p>
+ * The counters are updated by the GUI thread in every frame and read by JMX
+ * clients in other threads, so they are kept in atomic variables instead of
+ * being guarded by a lock: the GUI thread never waits for a reader. Values
+ * read together may come from slightly different moments.
+ * 
+ * @author Mateusz Matela
+ */
+public class ScrollStatistics implements ScrollStatisticsMBean {
+
+	private static final long[] JITTER_BUCKETS = new long[] { 1, 2, 4, 8, 16,
+			32 };
+
+	private static volatile ScrollStatistics instance;
+
+	private final boolean trace;
+
+	private final AtomicLong sessionCount = new AtomicLong();
+
+	private final AtomicLong lastActivationLatency = new AtomicLong();
+
+	private final AtomicLong totalActivationLatency = new AtomicLong();
+
+	/**
+	 * Number of sessions whose activation latency has been measured
+	 */
+	private final AtomicLong activationCount = new AtomicLong();
+
+	private final AtomicLong frameCount = new AtomicLong();
+
+	private final AtomicLong totalQueueDelay = new AtomicLong();
+
+	private final AtomicLong maxQueueDelay = new AtomicLong();
+
+	private final AtomicLongArray jitterHistogram = new AtomicLongArray(
+			JITTER_BUCKETS.length + 1);
+
+	private final AtomicLong coalescedFrames = new AtomicLong();
+
+	private final AtomicLong sessionPixels = new AtomicLong();
+
+	private final AtomicLong totalPixels = new AtomicLong();
+
+	/**
+	 * Frames of the current session, used only by the GUI thread
+	 */
+	private long sessionFrames;
+
+	/**
+	 * Coalesced frames of the current session, used only by the GUI thread
+	 */
+	private long sessionCoalescedFrames;
+
+	/**
+	 * Activation latency of the current session or -1 if the widget hasn't
+	 * been moved yet, used only by the GUI thread
+	 */
+	private long sessionActivationLatency;
+
+	private final AtomicInteger registeredWidgets = new AtomicInteger();
+
+	private final AtomicInteger registeredShells = new AtomicInteger();
+
+	private final AtomicInteger registeredDisplays = new AtomicInteger();
+
+	private final AtomicLong purgedEntries = new AtomicLong();
+
+	private final AtomicLong pluginStartTime = new AtomicLong();
+
+	private final AtomicLong startupTime = new AtomicLong();
+
+	private ScrollStatistics(boolean trace) {
+		this.trace = trace;
+	}
+
+	/**
+	 * 
+	 * @return the statistics or null if collecting statistics is disabled
+	 */
+	public static ScrollStatistics getDefault() {
+		return instance;
+	}
+
+	/**
+	 * Starts collecting statistics.
+	 * 
+	 * @param trace
+	 *            if true, a summary of every session is printed to the console
+	 * @return the statistics
+	 */
+	static ScrollStatistics enable(boolean trace) {
+		instance = new ScrollStatistics(trace);
+		return instance;
+	}
+
+	/**
+	 * Stops collecting statistics.
+	 */
+	static void disable() {
+		instance = null;
+	}
+
+	void pluginStarted(long time) {
+		pluginStartTime.set(time);
+		if (trace)
+			System.out.println("[" + Activator.PLUGIN_ID + "] plug-in start: "
+					+ time / 1000 / 1000.0 + " ms");
+	}
+
+	void startupWorkDone(long time) {
+		long total = startupTime.addAndGet(time);
+		if (trace)
+			System.out.println("[" + Activator.PLUGIN_ID + "] startup work: "
+					+ time / 1000 / 1000.0 + " ms, total "
+					+ total / 1000 / 1000.0 + " ms");
+	}
+
+	void sessionStarted() {
+		sessionCount.incrementAndGet();
+		sessionFrames = sessionCoalescedFrames = 0;
+		sessionActivationLatency = -1;
+		sessionPixels.set(0);
+	}
+
+	void firstFrameExecuted(long activationLatency) {
+		sessionActivationLatency = activationLatency;
+		activationCount.incrementAndGet();
+		lastActivationLatency.set(activationLatency);
+		totalActivationLatency.addAndGet(activationLatency);
+	}
+
+	void frameExecuted(long queueDelay, long jitter, int missedFrames) {
+		frameCount.incrementAndGet();
+		sessionFrames++;
+		queueDelay = Math.max(queueDelay, 0);
+		totalQueueDelay.addAndGet(queueDelay);
+		long max = maxQueueDelay.get();
+		while (queueDelay > max
+				&& !maxQueueDelay.compareAndSet(max, queueDelay))
+			max = maxQueueDelay.get();
+		int bucket = 0;
+		while (bucket < JITTER_BUCKETS.length
+				&& jitter >= JITTER_BUCKETS[bucket])
+			bucket++;
+		jitterHistogram.incrementAndGet(bucket);
+		if (missedFrames > 0) {
+			coalescedFrames.addAndGet(missedFrames);
+			sessionCoalescedFrames += missedFrames;
+		}
+	}
+
+	void scrolled(int pixels) {
+		sessionPixels.addAndGet(Math.abs(pixels));
+		totalPixels.addAndGet(Math.abs(pixels));
+	}
+
+	void sessionEnded() {
+		if (trace) {
+			System.out.println("[" + Activator.PLUGIN_ID + "] session "
+					+ sessionCount.get() + ": activation "
+					+ (sessionActivationLatency < 0 ? "-"
+							: sessionActivationLatency / 1000 / 1000.0
+									+ " ms") + ", " + sessionFrames + " frames, " + sessionCoalescedFrames
+					+ " coalesced, " + sessionPixels.get() + " pixels");
+		}
+	}
+
+	void widgetsChanged(int widgetsDelta, int shellsDelta) {
+		registeredWidgets.addAndGet(widgetsDelta);
+		registeredShells.addAndGet(shellsDelta);
+	}
+
+	public long getSessionCount() {
+		return sessionCount.get();
+	}
+
+	public double getLastActivationLatency() {
+		return lastActivationLatency.get() / 1000 / 1000.0;
+	}
+
+	public double getAverageActivationLatency() {
+		long activations = activationCount.get();
+		if (activations == 0)
+			return 0;
+		return totalActivationLatency.get() / activations / 1000 / 1000.0;
+	}
+
+	public double getAverageQueueDelay() {
+		long frames = frameCount.get();
+		if (frames == 0)
+			return 0;
+		return (double) totalQueueDelay.get() / frames;
+	}
+
+	public long getMaxQueueDelay() {
+		return maxQueueDelay.get();
+	}
+
+	public long getFrameCount() {
+		return frameCount.get();
+	}
+
+	public long[] getFrameJitterHistogram() {
+		long[] result = new long[jitterHistogram.length()];
+		for (int i = 0; i < result.length; i++)
+			result[i] = jitterHistogram.get(i);
+		return result;
+	}
+
+	public long getCoalescedFrames() {
+		return coalescedFrames.get();
+	}
+
+	public long getLastSessionPixels() {
+		return sessionPixels.get();
+	}
+
+	public long getTotalPixels() {
+		return totalPixels.get();
+	}
+
+	void displaysChanged(int displaysDelta) {
+		registeredDisplays.addAndGet(displaysDelta);
+	}
+
+	void entriesPurged(int count) {
+		purgedEntries.addAndGet(count);
+	}
+
+	public int getRegisteredWidgets() {
+		return registeredWidgets.get();
+	}
+
+	public int getRegisteredShells() {
+		return registeredShells.get();
+	}
+
+	public int getRegisteredDisplays() {
+		return registeredDisplays.get();
+	}
+
+	public long getPurgedEntries() {
+		return purgedEntries.get();
+	}
+
+	public double getPluginStartTime() {
+		return pluginStartTime.get() / 1000 / 1000.0;
+	}
+
+	public double getStartupTime() {
+		return startupTime.get() / 1000 / 1000.0;
+	}
+
+	public void reset() {
+		sessionCount.set(0);
+		lastActivationLatency.set(0);
+		totalActivationLatency.set(0);
+		activationCount.set(0);
+		frameCount.set(0);
+		totalQueueDelay.set(0);
+		maxQueueDelay.set(0);
+		for (int i = 0; i < jitterHistogram.length(); i++)
+			jitterHistogram.set(i, 0);
+		coalescedFrames.set(0);
+		sessionPixels.set(0);
+		totalPixels.set(0);
+		purgedEntries.set(0);
+	}
+}
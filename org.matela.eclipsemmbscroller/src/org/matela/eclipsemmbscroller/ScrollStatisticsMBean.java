@@ -0,0 +1,135 @@
+/*******************************************************************************
+ * Copyright (c) 2009 Mateusz Matela.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Mateusz Matela - initial API and implementation
+ *******************************************************************************/
+package org.matela.eclipsemmbscroller;
+
+/**
+ * Management interface of {@link ScrollStatistics}.
+ * 
+ * @author Mateusz Matela
+ */
+public interface ScrollStatisticsMBean {
+
+	/**
+	 * 
+	 * @return the number of scrolling sessions started
+	 */
+	public long getSessionCount();
+
+	/**
+	 * 
+	 * @return time (in milliseconds) between the middle button press and the
+	 *         end of the first frame that moved the widget, in the last
+	 *         session that moved it. Time in which the cursor stayed in the
+	 *         dead zone is not counted.
+	 */
+	public double getLastActivationLatency();
+
+	/**
+	 * 
+	 * @return average time (in milliseconds) between the middle button press
+	 *         and the end of the first frame that moved the widget, not
+	 *         counting time in which the cursor stayed in the dead zone
+	 */
+	public double getAverageActivationLatency();
+
+	/**
+	 * 
+	 * @return average delay (in milliseconds) between the time a frame was
+	 *         scheduled for and the time it was actually executed
+	 */
+	public double getAverageQueueDelay();
+
+	/**
+	 * 
+	 * @return the longest delay (in milliseconds) between the time a frame was
+	 *         scheduled for and the time it was actually executed
+	 */
+	public long getMaxQueueDelay();
+
+	/**
+	 * 
+	 * @return the number of frames executed
+	 */
+	public long getFrameCount();
+
+	/**
+	 * 
+	 * @return numbers of frames whose interval differed from the scheduled
+	 *         one by less than 1, 2, 4, 8, 16, 32 and 32 or more milliseconds
+	 */
+	public long[] getFrameJitterHistogram();
+
+	/**
+	 * 
+	 * @return the number of frames dropped because the GUI thread was busy.
+	 *         Their distance was added to the following frames.
+	 */
+	public long getCoalescedFrames();
+
+	/**
+	 * 
+	 * @return the number of pixels scrolled in the last session
+	 */
+	public long getLastSessionPixels();
+
+	/**
+	 * 
+	 * @return the number of pixels scrolled in all sessions
+	 */
+	public long getTotalPixels();
+
+	/**
+	 * 
+	 * @return the number of widgets that can currently be scrolled
+	 */
+	public int getRegisteredWidgets();
+
+	/**
+	 * 
+	 * @return the number of shells containing widgets that can currently be
+	 *         scrolled
+	 */
+	public int getRegisteredShells();
+
+	/**
+	 * 
+	 * @return the number of displays with a scroller
+	 */
+	public int getRegisteredDisplays();
+
+	/**
+	 * 
+	 * @return the number of registered widgets and shells found disposed
+	 *         without their disposal being reported. Growth of this number
+	 *         means that listeners are lost somewhere.
+	 */
+	public long getPurgedEntries();
+
+	/**
+	 * 
+	 * @return time (in milliseconds) spent in the plug-in's activator when the
+	 *         bundle was started, including registration of this MBean
+	 */
+	public double getPluginStartTime();
+
+	/**
+	 * 
+	 * @return time (in milliseconds) spent in the plug-in's startup code,
+	 *         both in the early startup thread and in the GUI thread
+	 */
+	public double getStartupTime();
+
+	/**
+	 * Clears all the statistics except the numbers of registered widgets,
+	 * shells and displays and the startup times.
+	 */
+	public void reset();
+}
@@ -0,0 +1,71 @@
+/*******************************************************************************
+ * Copyright (c) 2009 Mateusz Matela.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Mateusz Matela - initial API and implementation
+ *******************************************************************************/
+package org.matela.eclipsemmbscroller;
+
+/**
+ * The scrolled widget as seen by {@link ScrollEngine}. Implementations move
+ * the visible area of a real widget or only record the moves in a replay.
+ * 
+ * @author Mateusz Matela
+ */
+public interface ScrollTarget {
+
+	/**
+	 * 
+	 * @return true if the target can't be scrolled anymore
+	 */
+	public boolean isDisposed();
+
+	/**
+	 * 
+	 * @return height of a line in pixels
+	 */
+	public int getLineHeight();
+
+	/**
+	 * 
+	 * @return number of lines of the scrolled contents
+	 */
+	public int getLineCount();
+
+	/**
+	 * 
+	 * @return index of the first visible line
+	 */
+	public int getTopLine();
+
+	/**
+	 * Moves the visible area by given number of pixels.
+	 * 
+	 * @param horizontal
+	 *            horizontal distance, negative to the left
+	 * @param vertical
+	 *            vertical distance, negative up
+	 */
+	public void scrollPixels(int horizontal, int vertical);
+
+	/**
+	 * Moves the visible area by whole lines vertically and by given number of
+	 * pixels horizontally. The target is redrawn only once, at the final
+	 * position.
+	 * 
+	 * @param horizontal
+	 *            horizontal distance in pixels, negative to the left
+	 * @param lines
+	 *            vertical distance in lines, negative up
+	 */
+	public void scrollLines(int horizontal, int lines);
+
+	/**
+	 * Forces all outstanding repaints of the target.
+	 */
+	public void update();
+}
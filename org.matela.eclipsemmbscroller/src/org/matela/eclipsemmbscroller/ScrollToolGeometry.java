@@ -0,0 +1,116 @@
+/*******************************************************************************
+ * Copyright (c) 2009 Mateusz Matela.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Mateusz Matela - initial API and implementation
+ *******************************************************************************/
+package org.matela.eclipsemmbscroller;
+
+/**
+ * Geometry of the scroll tool: its picture and outline for any radius. This
+ * class doesn't depend on SWT, the results are turned into graphical
+ * resources by {@link ScrollToolResources}.
+ * 
+ * @author Mateusz Matela
+ */
+public class ScrollToolGeometry {
+
+	private ScrollToolGeometry() {
+	}
+
+	/**
+	 * 
+	 * @param r
+	 *            radius of the tool in pixels
+	 * @return pixels of the tool's picture as 24-bit RGB values, row by row
+	 */
+	public static int[] createPixels(int r) {
+		int size = 2 * r;
+		int[] pixels = new int[size * size];
+
+		/* set8Points() counts from 1, so that every row and column is filled */
+		for (int x = 0; x < r; x++)
+			for (int y = x; y < r; y++) {
+				int angleFactor = r - Math.max(2, Math.max(x - y, y - x));
+				int brightness = 255 - 255 * (x * x + y * y) / r / r
+						/ angleFactor;
+				set8Points(pixels, r, x + 1, y + 1, gray(brightness));
+			}
+		int arrowBrightness = 55;
+		for (int x = 1; x <= r / 3; x++)
+			for (int y = x; y <= r / 3; y++)
+				set8Points(pixels, r, x, r - y, gray(arrowBrightness));
+		set8Points(pixels, r, 1, 1, gray(arrowBrightness));
+		arrowBrightness *= 2;
+		set8Points(pixels, r, r / 3, r - r / 3 - 1, gray(arrowBrightness));
+		set8Points(pixels, r, 1, 2, gray(arrowBrightness));
+		return pixels;
+	}
+
+	/**
+	 * 
+	 * @param r
+	 *            radius of the tool in pixels
+	 * @return alpha values of the tool's picture, opaque inside the circle and
+	 *         transparent outside it
+	 */
+	public static byte[] createCircleAlpha(int r) {
+		int size = 2 * r;
+		byte[] alpha = new byte[size * size];
+		for (int y = 0; y < size; y++)
+			for (int x = 0; x < size; x++) {
+				int dx = 2 * x + 1 - size;
+				int dy = 2 * y + 1 - size;
+				if (dx * dx + dy * dy <= size * size)
+					alpha[y * size + x] = (byte) 255;
+			}
+		return alpha;
+	}
+
+	private static int gray(int brightness) {
+		return brightness << 16 | brightness << 8 | brightness;
+	}
+
+	/**
+	 * Sets the pixel at given coordinates, counted from 1 outwards from the
+	 * center, in all eight octants
+	 */
+	private static void set8Points(int[] pixels, int r, int x, int y, int pixel) {
+		int size = 2 * r;
+		pixels[(r + y - 1) * size + r + x - 1] = pixel;
+		pixels[(r - y) * size + r + x - 1] = pixel;
+		pixels[(r + y - 1) * size + r - x] = pixel;
+		pixels[(r - y) * size + r - x] = pixel;
+		pixels[(r + x - 1) * size + r + y - 1] = pixel;
+		pixels[(r - x) * size + r + y - 1] = pixel;
+		pixels[(r + x - 1) * size + r - y] = pixel;
+		pixels[(r - x) * size + r - y] = pixel;
+	}
+
+	/**
+	 * 
+	 * @param r
+	 *            radius of the tool in pixels
+	 * @return the tool's outline as a polygon (alternating x and y
+	 *         coordinates)
+	 */
+	public static int[] createCirclePolygon(int r) {
+		int[] result = new int[8 * r - 4];
+		for (int y = 1; y <= r; y++) {
+			int x = (int) Math.sqrt(r * r - y * y);
+			result[2 * y - 2] = r + x;
+			result[2 * y + 1 - 2] = r + y;
+			result[2 * (2 * r - y) - 2] = r - x;
+			result[2 * (2 * r - y) + 1 - 2] = r + y;
+			result[2 * (2 * r + y) - 4] = r - x;
+			result[2 * (2 * r + y) + 1 - 4] = r - y;
+			result[2 * (4 * r - y) - 4] = r + x;
+			result[2 * (4 * r - y) + 1 - 4] = r - y;
+		}
+		return result;
+	}
+}
@@ -0,0 +1,196 @@
+/*******************************************************************************
+ * Copyright (c) 2009 Mateusz Matela.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Mateusz Matela - initial API and implementation
+ *******************************************************************************/
+package org.matela.eclipsemmbscroller;
+
+import java.util.HashMap;
+import java.util.Iterator;
+
+import org.eclipse.swt.graphics.Image;
+import org.eclipse.swt.graphics.ImageData;
+import org.eclipse.swt.graphics.PaletteData;
+import org.eclipse.swt.graphics.Point;
+import org.eclipse.swt.graphics.Region;
+import org.eclipse.swt.widgets.Display;
+
+/**
+ * Graphical resources of the scroll tool. The picture and the outline of the
+ * tool are computed only once for every size and shared by all displays.
+ * Images and regions created from them are kept for every display until it's
+ * disposed.
+ * 
+ * @author Mateusz Matela
+ */
+class ScrollToolResources {
+
+	private static final PaletteData PALETTE = new PaletteData(0xFF0000,
+			0xFF00, 0xFF);
+
+	/**
+	 * Maps tool radius (in pixels) to {@link ImageData}
+	 */
+	private static final HashMap imageDataCache = new HashMap();
+
+	/**
+	 * Maps tool radius (in pixels) to outline polygon
+	 */
+	private static final HashMap polygonCache = new HashMap();
+
+	private static final HashMap displayResources = new HashMap();
+
+	private final Display display;
+
+	private final HashMap images = new HashMap();
+
+	private final HashMap regions = new HashMap();
+
+	private final HashMap overlayImages = new HashMap();
+
+	private ScrollToolResources(Display display) {
+		this.display = display;
+	}
+
+	/**
+	 * 
+	 * @param display
+	 *            the display to get resources for
+	 * @return resources for given display. They are disposed automatically
+	 *         together with the display.
+	 */
+	public static synchronized ScrollToolResources get(final Display display) {
+		ScrollToolResources resources = (ScrollToolResources) displayResources
+				.get(display);
+		if (resources == null) {
+			resources = new ScrollToolResources(display);
+			displayResources.put(display, resources);
+			display.disposeExec(new Runnable() {
+				public void run() {
+					dispose(display);
+				}
+			});
+		}
+		return resources;
+	}
+
+	/**
+	 * Disposes resources created for given display. This method should be
+	 * called from GUI thread of the display.
+	 * 
+	 * @param display
+	 *            the display
+	 */
+	public static synchronized void dispose(Display display) {
+		ScrollToolResources resources = (ScrollToolResources) displayResources
+				.remove(display);
+		if (resources == null)
+			return;
+		for (Iterator iterator = resources.images.values().iterator(); iterator
+				.hasNext();)
+			((Image) iterator.next()).dispose();
+		for (Iterator iterator = resources.overlayImages.values().iterator(); iterator
+				.hasNext();)
+			((Image) iterator.next()).dispose();
+		for (Iterator iterator = resources.regions.values().iterator(); iterator
+				.hasNext();)
+			((Region) iterator.next()).dispose();
+	}
+
+	/**
+	 * 
+	 * @param display
+	 *            the display
+	 * @return the zoom level (in percents) that should be applied to sizes of
+	 *         graphical elements shown on given display
+	 */
+	public static int getZoom(Display display) {
+		Point dpi = display.getDPI();
+		return Math.max(100, (dpi.x * 100 / 96 + 12) / 25 * 25);
+	}
+
+	/**
+	 * 
+	 * @param radius
+	 *            radius of the tool in pixels
+	 * @return the picture of the scroll tool
+	 */
+	public Image getImage(int radius) {
+		Integer key = new Integer(radius);
+		Image image = (Image) images.get(key);
+		if (image == null) {
+			image = new Image(display, getImageData(radius));
+			images.put(key, image);
+		}
+		return image;
+	}
+
+	/**
+	 * 
+	 * @param radius
+	 *            radius of the tool in pixels
+	 * @return the picture of the scroll tool with transparent corners, suitable
+	 *         for painting directly on a widget
+	 */
+	public Image getOverlayImage(int radius) {
+		Integer key = new Integer(radius);
+		Image image = (Image) overlayImages.get(key);
+		if (image == null) {
+			ImageData imageData = (ImageData) getImageData(radius).clone();
+			imageData.alphaData = ScrollToolGeometry.createCircleAlpha(radius);
+			image = new Image(display, imageData);
+			overlayImages.put(key, image);
+		}
+		return image;
+	}
+
+	/**
+	 * 
+	 * @param radius
+	 *            radius of the tool in pixels
+	 * @return the round outline of the scroll tool
+	 */
+	public Region getRegion(int radius) {
+		Integer key = new Integer(radius);
+		Region region = (Region) regions.get(key);
+		if (region == null) {
+			region = new Region(display);
+			region.add(getCirclePolygon(radius));
+			regions.put(key, region);
+		}
+		return region;
+	}
+
+	private static synchronized ImageData getImageData(int radius) {
+		Integer key = new Integer(radius);
+		ImageData imageData = (ImageData) imageDataCache.get(key);
+		if (imageData == null) {
+			imageData = createImageData(radius);
+			imageDataCache.put(key, imageData);
+		}
+		return imageData;
+	}
+
+	private static synchronized int[] getCirclePolygon(int radius) {
+		Integer key = new Integer(radius);
+		int[] polygon = (int[]) polygonCache.get(key);
+		if (polygon == null) {
+			polygon = ScrollToolGeometry.createCirclePolygon(radius);
+			polygonCache.put(key, polygon);
+		}
+		return polygon;
+	}
+
+	private static ImageData createImageData(int r) {
+		int size = 2 * r;
+		ImageData imageData = new ImageData(size, size, 24, PALETTE);
+		int[] pixels = ScrollToolGeometry.createPixels(r);
+		imageData.setPixels(0, 0, pixels.length, pixels, 0);
+		return imageData;
+	}
+}
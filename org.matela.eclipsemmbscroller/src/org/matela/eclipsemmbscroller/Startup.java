@@ -10,16 +10,23 @@
  *******************************************************************************/
 package org.matela.eclipsemmbscroller;
 
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
 import java.util.ArrayList;
 
+import org.eclipse.jface.preference.IPreferenceStore;
 import org.eclipse.jface.text.TextViewer;
+import org.eclipse.jface.viewers.ISelectionProvider;
+import org.eclipse.jface.viewers.Viewer;
 import org.eclipse.swt.custom.StyledText;
+import org.eclipse.swt.widgets.Control;
+import org.eclipse.swt.widgets.Scrollable;
+import org.eclipse.swt.widgets.Table;
+import org.eclipse.swt.widgets.Tree;
 import org.eclipse.ui.IEditorReference;
 import org.eclipse.ui.IPartListener2;
 import org.eclipse.ui.IPartService;
 import org.eclipse.ui.IStartup;
+import org.eclipse.ui.IViewPart;
+import org.eclipse.ui.IViewReference;
 import org.eclipse.ui.IWorkbench;
 import org.eclipse.ui.IWorkbenchPage;
 import org.eclipse.ui.IWorkbenchPart;
@@ -28,18 +35,21 @@ import org.eclipse.ui.IWorkbenchWindow;
 import org.eclipse.ui.PlatformUI;
 import org.eclipse.ui.part.MultiPageEditorPart;
 import org.eclipse.ui.texteditor.AbstractTextEditor;
+import org.matela.eclipsemmbscroller.preferences.PreferenceConstants;
 
 /**
  * Implementation of IStartup required by org.eclipse.ui.startup extension
- * point. It adds scrolling feature to all found text editors and adds a
- * listener to react when new editors come up.
+ * point. It adds scrolling feature to all found text editors and to trees and
+ * tables of views, and adds a listener to react when new parts come up. Alternatively, if
+ * {@link PreferenceConstants#DETECT_ON_CLICK} is set, editors are not searched
+ * at all and text widgets are detected when they're clicked.
  * 
  * @author Mateusz Matela
  */
 public class Startup implements IStartup {
 
 	/**
-	 * Listener for adding a scroller to newly opened editors
+	 * Listener for adding a scroller to newly opened parts
 	 */
 	private class PartListener implements IPartListener2 {
 
@@ -78,15 +88,56 @@ public class Startup implements IStartup {
 
 	private final PartListener listener = new PartListener();
 
+	private final EditorAccess editorAccess = new EditorAccess();
+
 	public void earlyStartup() {
-		register();
+		long startTime = System.nanoTime();
+		final IWorkbench workbench = PlatformUI.getWorkbench();
+		IPreferenceStore store = Activator.getDefault().getPreferenceStore();
+		if (store.getBoolean(PreferenceConstants.DETECT_ON_CLICK)) {
+			final WidgetFilter filter = new WidgetFilter(store
+					.getString(PreferenceConstants.INCLUDED_WIDGETS), store
+					.getString(PreferenceConstants.EXCLUDED_WIDGETS));
+			workbench.getDisplay().asyncExec(new Runnable() {
+				public void run() {
+					long startTime = System.nanoTime();
+					StyledTextScroller.addAllControls(workbench
+							.getDisplay(), filter);
+					startupWorkDone(startTime);
+				}
+			});
+			startupWorkDone(startTime);
+			return;
+		}
+		workbench.getDisplay().asyncExec(new Runnable() {
+			public void run() {
+				long startTime = System.nanoTime();
+				register(workbench);
+				startupWorkDone(startTime);
+			}
+		});
+		startupWorkDone(startTime);
 	}
 
 	/**
-	 * Searches through the workbench and adds scroller wherever possible.
+	 * Adds the time of a part of startup work to the statistics, if they are
+	 * collected.
+	 * 
+	 * @param startTime
+	 *            {@link System#nanoTime()} at the beginning of the work
 	 */
-	private void register() {
-		IWorkbench workbench = PlatformUI.getWorkbench();
+	private static void startupWorkDone(long startTime) {
+		ScrollStatistics statistics = ScrollStatistics.getDefault();
+		if (statistics != null)
+			statistics.startupWorkDone(System.nanoTime() - startTime);
+	}
+
+	/**
+	 * Searches through the workbench and adds scroller wherever possible. The
+	 * whole search is done in one pass, so this method must be called from the
+	 * GUI thread.
+	 */
+	private void register(IWorkbench workbench) {
 		IWorkbenchWindow[] workbenchWindows = workbench.getWorkbenchWindows();
 		for (int i = 0; i < workbenchWindows.length; i++) {
 			IWorkbenchPage[] pages = workbenchWindows[i].getPages();
@@ -96,6 +147,10 @@ public class Startup implements IStartup {
 				for (int k = 0; k < editorReferences.length; k++) {
 					tryToAttachScroller(editorReferences[k].getPart(false));
 				}
+				IViewReference[] viewReferences = pages[j].getViewReferences();
+				for (int k = 0; k < viewReferences.length; k++) {
+					tryToAttachScroller(viewReferences[k].getPart(false));
+				}
 			}
 
 			IPartService partService = workbenchWindows[i].getPartService();
@@ -104,137 +159,71 @@ public class Startup implements IStartup {
 	}
 
 	/**
-	 * Obtains given editor's text viewer using reflection mechanism
-	 * 
-	 * @param editor
-	 *            the editor to get the text viewer from
-	 * @return obtained text viewer or null if it couldn't be obtained
-	 */
-	private TextViewer getTextViewer(AbstractTextEditor editor) {
-		try {
-			Method method = AbstractTextEditor.class.getDeclaredMethod(
-					"getSourceViewer", new Class[] {});
-			method.setAccessible(true);
-			return (TextViewer) method.invoke(editor, new Object[] {});
-		} catch (SecurityException e) {
-			return null;
-		} catch (NoSuchMethodException e) {
-			return null;
-		} catch (IllegalArgumentException e) {
-			return null;
-		} catch (IllegalAccessException e) {
-			return null;
-		} catch (InvocationTargetException e) {
-			return null;
-		} catch (ClassCastException e) {
-			return null;
-		}
-	}
-
-	private Object getEditor(final MultiPageEditorPart multiEditor,
-			final int index) {
-		final Object[] editor = new Object[1];
-		IWorkbench workbench = PlatformUI.getWorkbench();
-		workbench.getDisplay().syncExec(new Runnable() {
-			public void run() {
-				try {
-					final Method getEditor = MultiPageEditorPart.class
-							.getDeclaredMethod("getEditor",
-									new Class[] { Integer.TYPE });
-					getEditor.setAccessible(true);
-					editor[0] = getEditor.invoke(multiEditor,
-							new Object[] { (Object) new Integer(index) });
-				} catch (SecurityException e) {
-					// continue
-				} catch (NoSuchMethodException e) {
-					// continue
-				} catch (IllegalArgumentException e) {
-					// continue
-				} catch (IllegalAccessException e) {
-					// continue
-				} catch (InvocationTargetException e) {
-					// continue
-				}
-			}
-		});
-		return editor[0];
-	}
-
-	/**
-	 * Searches given editor's pages for text editors. It uses reflection
-	 * mechanism.
+	 * Searches given editor's pages for text editors. This method must be
+	 * called from the GUI thread.
 	 * 
 	 * @param multiEditor
 	 *            the multi-part editor to search
-	 * @return an array of text viewers. If no viewers could be found or an
+	 * @return an array of text editors. If no editors could be found or an
 	 *         error occurs, the array is empty.
 	 */
-	private TextViewer[] getTextViewers(final MultiPageEditorPart multiEditor) {
-		ArrayList textViewers = new ArrayList();
-		try {
-			final Method getPageCount = MultiPageEditorPart.class
-					.getDeclaredMethod("getPageCount", new Class[0]);
-			getPageCount.setAccessible(true);
-			int pageCount = ((Integer) getPageCount.invoke(multiEditor,
-					new Object[0])).intValue();
-			for (int i = 0; i < pageCount; i++) {
-				final Object editor = getEditor(multiEditor, i);
-				if (editor instanceof AbstractTextEditor) {
-					TextViewer viewer = getTextViewer((AbstractTextEditor) editor);
-					if (viewer != null)
-						textViewers.add(viewer);
-				}
-			}
-		} catch (SecurityException e) {
-			// continue
-		} catch (NoSuchMethodException e) {
-			// continue
-		} catch (IllegalArgumentException e) {
-			// continue
-		} catch (IllegalAccessException e) {
-			// continue
-		} catch (InvocationTargetException e) {
-			// continue
-		} catch (ClassCastException e) {
-			// continue
+	private AbstractTextEditor[] getTextEditors(
+			MultiPageEditorPart multiEditor) {
+		ArrayList textEditors = new ArrayList();
+		int pageCount = editorAccess.getPageCount(multiEditor);
+		for (int i = 0; i < pageCount; i++) {
+			Object editor = editorAccess.getEditor(multiEditor, i);
+			if (editor instanceof AbstractTextEditor)
+				textEditors.add(editor);
 		}
-		return (TextViewer[]) textViewers.toArray(new TextViewer[0]);
+		return (AbstractTextEditor[]) textEditors
+				.toArray(new AbstractTextEditor[0]);
 	}
 
 	/**
 	 * Tries to attach a scroller to given part. If the part is a text editor,
 	 * the scroller is attached to its text viewer. If the part is a multi-part
 	 * editor, the scroller is attached to every sub-part that is a text editor.
+	 * If the part is a view whose selection comes from a tree or table viewer,
+	 * the scroller is attached to the viewer's control. This method must be
+	 * called from the GUI thread.
 	 * 
 	 * @param part
 	 *            the part to add scroller to. Should be an instance of
-	 *            {@link AbstractTextEditor} or {@link MultiPageEditorPart}
-	 *            (otherwise nothing happens).
+	 *            {@link AbstractTextEditor}, {@link MultiPageEditorPart} or
+	 *            {@link IViewPart} (otherwise nothing happens).
 	 */
 	private void tryToAttachScroller(IWorkbenchPart part) {
-		if (part instanceof AbstractTextEditor) {
-			TextViewer viewer = getTextViewer((AbstractTextEditor) part);
-			if (viewer != null) {
-				final StyledText widget = viewer.getTextWidget();
-				viewer.getControl().getDisplay().asyncExec(new Runnable() {
-					public void run() {
-						StyledTextScroller.addStyledText(widget);
-					}
-				});
-			}
-		}
+		if (part instanceof AbstractTextEditor)
+			attachScroller((AbstractTextEditor) part);
 		if (part instanceof MultiPageEditorPart) {
-			TextViewer[] textViewers = getTextViewers((MultiPageEditorPart) part);
-			for (int i = 0; i < textViewers.length; i++) {
-				final StyledText widget = textViewers[i].getTextWidget();
-				textViewers[i].getControl().getDisplay().asyncExec(
-						new Runnable() {
-							public void run() {
-								StyledTextScroller.addStyledText(widget);
-							}
-						});
-			}
+			AbstractTextEditor[] textEditors = getTextEditors(
+					(MultiPageEditorPart) part);
+			for (int i = 0; i < textEditors.length; i++)
+				attachScroller(textEditors[i]);
+		}
+		if (part instanceof IViewPart) {
+			ISelectionProvider provider = part.getSite().getSelectionProvider();
+			if (provider instanceof Viewer)
+				attachScroller((Viewer) provider);
 		}
 	}
 
+	private void attachScroller(AbstractTextEditor editor) {
+		TextViewer viewer = editorAccess.getTextViewer(editor);
+		if (viewer == null)
+			return;
+		StyledText widget = viewer.getTextWidget();
+		if (widget != null && !widget.isDisposed())
+			StyledTextScroller.addTextViewer(viewer, editorAccess
+					.getSourceViewerConfiguration(editor));
+	}
+
+	private void attachScroller(Viewer viewer) {
+		Control control = viewer.getControl();
+		if ((control instanceof Tree || control instanceof Table)
+				&& !control.isDisposed())
+			StyledTextScroller.addControl((Scrollable) control);
+	}
+
 }
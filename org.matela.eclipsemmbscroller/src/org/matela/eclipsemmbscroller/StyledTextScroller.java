@@ -15,6 +15,13 @@ import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Set;
 
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.jface.preference.IPreferenceStore;
+import org.eclipse.jface.text.TextViewer;
+import org.eclipse.jface.text.source.SourceViewerConfiguration;
+import org.eclipse.jface.util.IPropertyChangeListener;
+import org.eclipse.jface.util.PropertyChangeEvent;
 import org.eclipse.swt.SWT;
 import org.eclipse.swt.custom.StyledText;
 import org.eclipse.swt.events.ControlEvent;
@@ -23,18 +30,23 @@ import org.eclipse.swt.events.DisposeEvent;
 import org.eclipse.swt.events.DisposeListener;
 import org.eclipse.swt.events.FocusEvent;
 import org.eclipse.swt.events.FocusListener;
-import org.eclipse.swt.graphics.Color;
-import org.eclipse.swt.graphics.GC;
+import org.eclipse.swt.events.PaintEvent;
+import org.eclipse.swt.events.PaintListener;
 import org.eclipse.swt.graphics.Image;
 import org.eclipse.swt.graphics.Point;
-import org.eclipse.swt.graphics.Region;
+import org.eclipse.swt.graphics.Rectangle;
+import org.eclipse.swt.widgets.Control;
 import org.eclipse.swt.widgets.Display;
 import org.eclipse.swt.widgets.Event;
 import org.eclipse.swt.widgets.Listener;
+import org.eclipse.swt.widgets.Scrollable;
 import org.eclipse.swt.widgets.Shell;
+import org.eclipse.swt.widgets.Widget;
+import org.matela.eclipsemmbscroller.preferences.PreferenceConstants;
 
 /**
- * This class can add scrolling functionality to {@link StyledText} widgets.
+ * This class can add scrolling functionality to {@link StyledText} widgets,
+ * tables, trees and other scrolled composites (see {@link ControlTarget}).
  * Scrolling starts when middle mouse button is pressed in a widget. The
  * direction and speed of scrolling is controlled with mouse cursor position on
  * the screen.
@@ -47,148 +59,175 @@ import org.eclipse.swt.widgets.Shell;
 public class StyledTextScroller {
 
 	/**
-	 * A thread responsible for periodic checking of current position of the
-	 * mouse cursor, calculating scrolling speed and moving visible area of
-	 * currently scrolled widget.
+	 * Drives {@link ScrollEngine} in the GUI thread: every tick reschedules
+	 * itself with {@link Display#timerExec(int, Runnable)}, so no additional
+	 * thread is needed. The session's state is used only by the GUI thread,
+	 * so it's not guarded by any lock. While the engine is parked nothing is
+	 * scheduled, and the next mouse move wakes it up.
+	 * <p>
+	 * It also provides the engine with the location of the cursor, taken from
+	 * mouse move events of the session. Outside of the scrolled widget's
+	 * shell the events may not be delivered, so there the location is asked
+	 * from the display in every frame.
+	 * <p>
+	 * If the scrolled widget belongs to a known {@link TextViewer}, a
+	 * {@link PresentationWarmer} prepares the lines ahead of the visible
+	 * area after every frame, and a {@link DecorationSuspender} turns off
+	 * the viewer's rulers while the speed is high.
 	 */
-	private class ScrollingThread extends Thread {
-		private final double SCROLL_SPEED = 0.005;
+	private class ScrollingTimer implements Runnable, CursorSource {
+		private final ScrollEngine engine = new ScrollEngine(this,
+				FrameClock.SYSTEM);
 
-		private final double SCROLL_FACTOR_LINEAR = 0.6;
+		private final OverlayTarget target = new OverlayTarget();
 
-		private final double SCROLL_FACTOR_SQUARE = 0.012;
+		private final PresentationWarmer warmer = new PresentationWarmer(
+				fDisplay);
 
-		private final int MIN_SCROLL_INTERVAL = 30;
+		private final DecorationSuspender suspender = new DecorationSuspender();
 
-		private StyledText currentWidget;
+		private int cursorX, cursorY;
 
-		private int horizontalScrollDistance = 1;
+		/**
+		 * Location of the scrolled widget in display coordinates. Moving the
+		 * widget ends the scrolling, so it's computed only once.
+		 */
+		private int widgetX, widgetY;
 
-		private int verticalScrollDistance = 0;
+		/**
+		 * Bounds of the scrolled widget's shell in display coordinates
+		 */
+		private Rectangle shellBounds;
 
-		private int sleepTime = 0;
+		/**
+		 * {@link System#nanoTime()} when the middle button was pressed
+		 */
+		private long activationTime;
 
-		public Point initialLocation;
+		/**
+		 * {@link System#nanoTime()} when the engine parked last time
+		 */
+		private long parkTime;
 
-		public Point currentLocation;
+		/**
+		 * Time (in nanoseconds) the engine has been parked before the widget
+		 * moved for the first time
+		 */
+		private long parkedTime;
 
-		public boolean scrollStarted;
+		private boolean firstFrameReported;
 
-		private Runnable runnable = new Runnable() {
-			public void run() {
-				StyledText widget;
-				int vertical, horizontal;
-				synchronized (StyledTextScroller.this) {
-					currentLocation = fDisplay.getCursorLocation();
-					widget = currentWidget;
-					vertical = verticalScrollDistance;
-					horizontal = horizontalScrollDistance;
-				}
-				if (widget != null && !widget.isDisposed()) {
-					if (vertical != 0) {
-						widget.setTopPixel(widget.getTopPixel() + vertical);
-					}
-					if (horizontal != 0) {
-						widget.setHorizontalPixel(widget.getHorizontalPixel()
-								+ horizontal);
-					}
-				}
-			}
-		};
+		/**
+		 * True if the cursor has left a widget and hasn't moved over any
+		 * widget of the display since. Outside of the display's windows there
+		 * are no mouse move events, so the cursor's location has to be
+		 * polled.
+		 */
+		private boolean cursorLeft;
 
 		public void run() {
-			Point tempLocation = null;
-			while (true) {
-
-				if (isInterrupted())
-					return;
-				try {
-					if (isActive()) {
-						Thread.sleep(sleepTime);
-					} else
-						synchronized (this) {
-							while (!isActive())
-								wait();
-						}
-				} catch (InterruptedException e) {
-					return;
-				}
-
-				synchronized (this) {
-					if (!currentLocation.equals(tempLocation)) {
-						tempLocation = currentLocation;
-						double verticalSpeed = absDec(tempLocation.y
-								- initialLocation.y, SCROLL_TOOL_RADIUS);
-						double horizontalSpeed = absDec(tempLocation.x
-								- initialLocation.x, SCROLL_TOOL_RADIUS);
-						if (verticalSpeed != 0 || horizontalSpeed != 0) {
-							recalculateScrollingSpeed(verticalSpeed,
-									horizontalSpeed);
-						} else {
-							resetScrollingSpeed();
-						}
-					}
-				}
-
-				fDisplay.asyncExec(runnable);
+			if (target.control == null)
+				return;
+			int delay = engine.isParked() ? wake() : engine.tick();
+			if (delay != ScrollEngine.STOPPED) {
+				warmer.scrolled(engine.getVerticalSpeed());
+				suspender.scrolled(engine.getVerticalSpeed());
 			}
+			schedule(delay);
 		}
 
-		private void recalculateScrollingSpeed(double verticalSpeed,
-				double horizontalSpeed) {
-			verticalSpeed = SCROLL_SPEED
-					* (SCROLL_FACTOR_LINEAR * verticalSpeed + SCROLL_FACTOR_SQUARE
-							* absSqr(verticalSpeed));
-			horizontalSpeed = SCROLL_SPEED
-					* (SCROLL_FACTOR_LINEAR * horizontalSpeed + SCROLL_FACTOR_SQUARE
-							* absSqr(horizontalSpeed));
-
-			if (verticalSpeed != 0) {
-				sleepTime = Math.abs((int) Math.round(1.0 / verticalSpeed));
-				if (horizontalSpeed != 0)
-					sleepTime = Math.min(sleepTime, Math.abs((int) Math
-							.round(1.0 / horizontalSpeed)));
-			} else {
-				sleepTime = Math.abs((int) Math.round(1.0 / horizontalSpeed));
-			}
-			sleepTime = Math.max(sleepTime, MIN_SCROLL_INTERVAL);
-
-			verticalScrollDistance = (int) Math
-					.round(sleepTime * verticalSpeed);
-			horizontalScrollDistance = (int) Math.round(sleepTime
-					* horizontalSpeed);
+		private void schedule(int delay) {
+			if (!firstFrameReported && engine.isScrollStarted())
+				reportFirstFrame();
+			if (delay == ScrollEngine.STOPPED)
+				StyledTextScroller.this.deactivate();
+			else if (delay == ScrollEngine.PARKED) {
+				parkTime = System.nanoTime();
+				if (cursorLeft)
+					/* no mouse move will wake the engine up */
+					fDisplay.timerExec(CURSOR_POLL_INTERVAL, this);
+			} else
+				fDisplay.timerExec(delay, this);
+		}
 
-			scrollStarted = true;
+		/**
+		 * Adds the time from the middle button press to the end of the first
+		 * frame that moved the widget to the statistics. Time the engine
+		 * spent parked, waiting for the cursor to leave the dead zone, is not
+		 * counted.
+		 */
+		private void reportFirstFrame() {
+			firstFrameReported = true;
+			ScrollStatistics statistics = ScrollStatistics.getDefault();
+			if (statistics != null)
+				statistics.firstFrameExecuted(System.nanoTime()
+						- activationTime - parkedTime);
 		}
 
-		private void resetScrollingSpeed() {
-			horizontalScrollDistance = verticalScrollDistance = 0;
-			sleepTime = 100;
+		public void getLocation(int[] location) {
+			if (cursorLeft || !shellBounds.contains(cursorX, cursorY)) {
+				/*
+				 * returns a new point, so it's called only when mouse moves
+				 * can't be relied on
+				 */
+				Point cursorLocation = fDisplay.getCursorLocation();
+				cursorX = cursorLocation.x;
+				cursorY = cursorLocation.y;
+			}
+			location[0] = cursorX;
+			location[1] = cursorY;
 		}
 
-		private int absDec(int value, int decrement) {
-			if (value > 0) {
-				value -= decrement;
-				if (value < 0)
-					return 0;
+		/**
+		 * Remembers the location of the cursor from given mouse move event
+		 * and wakes up the parked engine.
+		 * 
+		 * @param event
+		 *            the mouse move event
+		 */
+		public void mouseMoved(Event event) {
+			if (target.control == null || !(event.widget instanceof Control))
+				return;
+			if (event.widget == target.control.getControl()) {
+				cursorX = widgetX + event.x;
+				cursorY = widgetY + event.y;
 			} else {
-				value += decrement;
-				if (value > 0)
-					return 0;
+				Point location = ((Control) event.widget).toDisplay(event.x,
+						event.y);
+				cursorX = location.x;
+				cursorY = location.y;
 			}
-			return value;
+			cursorLeft = false;
+			if (engine.isParked())
+				schedule(wake());
+		}
+
+		/**
+		 * Starts polling the location of the cursor, which may be leaving the
+		 * display's windows, until it moves over a widget again. The parked
+		 * engine is woken up, since the cursor can't be in the dead zone any
+		 * more.
+		 */
+		public void mouseExited() {
+			if (target.control == null)
+				return;
+			cursorLeft = true;
+			if (engine.isParked())
+				schedule(wake());
 		}
 
-		private double absSqr(double value) {
-			return value < 0 ? -value * value : value * value;
+		private int wake() {
+			if (!firstFrameReported)
+				parkedTime += System.nanoTime() - parkTime;
+			return engine.wake();
 		}
 
 		/**
 		 * 
 		 * @return true if one of the widgets is being scrolled
 		 */
-		public synchronized boolean isActive() {
-			return currentWidget != null;
+		public boolean isActive() {
+			return target.control != null;
 		}
 
 		/**
@@ -199,26 +238,80 @@ public class StyledTextScroller {
 		 * @param cursorLocation
 		 *            the location of the cursor at the beginning of the
 		 *            scrolling
+		 * @param jump
+		 *            true if the jump modifier was pressed together with the
+		 *            middle button
+		 * @param activationTime
+		 *            {@link System#nanoTime()} when the middle button was
+		 *            pressed
 		 */
-		public synchronized void activate(StyledText widget,
-				Point cursorLocation) {
-			initialLocation = currentLocation = cursorLocation;
-			currentWidget = widget;
-			scrollStarted = false;
-			resetScrollingSpeed();
-
-			if (isAlive()) {
-				notify();
+		public void activate(Control widget, Point cursorLocation,
+				boolean jump, long activationTime) {
+			this.activationTime = activationTime;
+			parkedTime = 0;
+			firstFrameReported = false;
+			cursorLeft = false;
+			IPreferenceStore store = Activator.getDefault().getPreferenceStore();
+			if (PreferenceConstants.MODE_FIXED_RATE.equals(store
+					.getString(PreferenceConstants.SCROLL_MODE)))
+				engine.setFrameRate(Math.max(1, store
+						.getInt(PreferenceConstants.FRAME_RATE)));
+			else
+				engine.setFrameRate(0);
+			engine.setTurbo(store
+					.getBoolean(PreferenceConstants.TURBO_SCROLLING));
+			engine.setDeadZone(fToolRadius);
+			engine.setProfile(getProfile());
+			engine.setMomentum(store
+					.getBoolean(PreferenceConstants.MOMENTUM_SCROLLING));
+			boolean suspendDecorations = store
+					.getBoolean(PreferenceConstants.SUSPEND_DECORATIONS);
+			jump = jump
+					&& store.getBoolean(PreferenceConstants.JUMP_SCROLLING);
+
+			target.control = ControlTarget.create(widget);
+			cursorX = cursorLocation.x;
+			cursorY = cursorLocation.y;
+			shellBounds = widget.getShell().getBounds();
+			Point widgetLocation = widget.toDisplay(0, 0);
+			widgetX = widgetLocation.x;
+			widgetY = widgetLocation.y;
+			TextViewer viewer = (TextViewer) widget.getData(VIEWER_KEY);
+			SourceViewerConfiguration configuration = (SourceViewerConfiguration) widget
+					.getData(CONFIGURATION_KEY);
+			suspender.start(suspendDecorations ? viewer : null);
+			if (jump) {
+				/* the whole height of the screen maps to the whole document */
+				warmer.start(null, null);
+				Rectangle area = widget.getMonitor().getClientArea();
+				schedule(engine.startJump(target, cursorX, cursorY, area.y,
+						area.y + area.height - 1));
 			} else {
-				start();
+				warmer.start(viewer, configuration);
+				schedule(engine.start(target, cursorX, cursorY));
 			}
 		}
 
 		/**
 		 * Stops scrolling
 		 */
-		public synchronized void deactivate() {
-			currentWidget = null;
+		public void deactivate() {
+			engine.stop();
+			target.control = null;
+			warmer.stop();
+			suspender.stop();
+			fDisplay.timerExec(-1, this);
+		}
+
+		/**
+		 * 
+		 * @param widget
+		 *            the widget to check
+		 * @return true if given widget is being scrolled
+		 */
+		public boolean isScrolling(Control widget) {
+			return target.control != null
+					&& target.control.getControl() == widget;
 		}
 
 		/**
@@ -226,14 +319,83 @@ public class StyledTextScroller {
 		 * @return true if visible area has been moved since the last activation
 		 *         of the scrolling.
 		 */
-		public synchronized boolean isScrollStarted() {
-			return scrollStarted;
+		public boolean isScrollStarted() {
+			return engine.isScrollStarted();
+		}
+
+		/**
+		 * Lets the widget keep moving with decaying speed if momentum
+		 * scrolling is enabled.
+		 * 
+		 * @return true if the widget keeps moving, false if scrolling has
+		 *         been stopped
+		 */
+		public boolean release() {
+			return engine.release();
+		}
+
+		/**
+		 * 
+		 * @return true if the button has been released and the widget keeps
+		 *         moving with decaying speed
+		 */
+		public boolean isCoasting() {
+			return engine.isCoasting();
+		}
+
+		/**
+		 * 
+		 * @return true if the widget is scrolled in jump mode
+		 */
+		public boolean isJumping() {
+			return engine.isJumping();
+		}
+	}
+
+	/**
+	 * Passes the moves to the {@link ControlTarget} of the currently scrolled
+	 * control and keeps the scroll tool painted on it.
+	 */
+	private class OverlayTarget implements ScrollTarget {
+		private ControlTarget control;
+
+		public boolean isDisposed() {
+			return control == null || control.isDisposed();
+		}
+
+		public int getLineHeight() {
+			return control.getLineHeight();
+		}
+
+		public int getLineCount() {
+			return control.getLineCount();
+		}
+
+		public int getTopLine() {
+			return control.getTopLine();
+		}
+
+		public void scrollPixels(int horizontal, int vertical) {
+			control.scrollPixels(horizontal, vertical);
+			fOverlayPainter.scrolled(horizontal, vertical);
+		}
+
+		public void scrollLines(int horizontal, int lines) {
+			control.scrollLines(horizontal, lines);
+			fOverlayPainter.scrolled(horizontal, lines
+					* control.getLineHeight());
+		}
+
+		public void update() {
+			control.update();
 		}
 	}
 
 	/**
 	 * This class is responsible for listening for GUI events and
-	 * activating/deactivating scrolling.
+	 * activating/deactivating scrolling. It listens for mouse clicks only in
+	 * scrolled widgets, unless any widget accepted by {@link #fWidgetFilter}
+	 * can be scrolled.
 	 */
 	private class ScrollLisener implements FocusListener, ControlListener,
 			Listener, DisposeListener {
@@ -259,104 +421,449 @@ public class StyledTextScroller {
 			deactivate();
 		}
 
+		public void handleEvent(Event event) {
+			long eventTime = System.nanoTime();
+			if (event == fDeactivatingEvent) {
+				/* this click has just stopped scrolling */
+				fDeactivatingEvent = null;
+				return;
+			}
+			if (event.button == 2 && !isActive()
+					&& isScrollable(event.widget)) {
+				activate((Control) event.widget,
+						(event.stateMask & SWT.MOD1) != 0, eventTime);
+			}
+		}
+
+		public void widgetDisposed(DisposeEvent e) {
+			if (fRegistry.contains(e.widget)) {
+				unscrollControl((Control) e.widget);
+			} else if (fRegistry.containsShell(e.widget)) {
+				fRegistry.removeShell((Shell) e.widget);
+				disposeIfUnused();
+			}
+		}
+	}
+
+	/**
+	 * Display filter installed only while scrolling is active, so that clicks
+	 * and keys in the rest of the workbench are not processed otherwise. It
+	 * stops scrolling when a mouse button is pressed anywhere or released after
+	 * the visible area has been moved. Momentum scrolling after the release is
+	 * also stopped by any key or the mouse wheel, and jump scrolling by any key.
+	 * Only the release completes a jump, stopping in any other way leaves the
+	 * visible area where it is. Mouse moves are passed to the scrolling timer
+	 * as locations of the cursor.
+	 */
+	private class SessionFilter implements Listener {
 		public void handleEvent(Event event) {
 			switch (event.type) {
 			case SWT.MouseDown:
-				if (fScrolledWidgets.contains(event.widget)
-						&& event.button == 2 && !isActive()) {
-					activate((StyledText) event.widget);
-				} else {
+				fDeactivatingEvent = event;
+				deactivate();
+				break;
+			case SWT.MouseUp:
+				if (fScrollingTimer.isScrollStarted()
+						&& !fScrollingTimer.isCoasting()) {
+					release();
+				}
+				break;
+			case SWT.MouseMove:
+				fScrollingTimer.mouseMoved(event);
+				break;
+			case SWT.MouseExit:
+				fScrollingTimer.mouseExited();
+				break;
+			case SWT.KeyDown:
+				if (fScrollingTimer.isCoasting()
+						|| fScrollingTimer.isJumping()) {
 					deactivate();
 				}
 				break;
-			case SWT.MouseUp:
-				if (isActive() && fScrollingThread.isScrollStarted()) {
+			case SWT.MouseWheel:
+				if (fScrollingTimer.isCoasting()) {
 					deactivate();
 				}
 				break;
 			}
 		}
+	}
 
-		public void widgetDisposed(DisposeEvent e) {
-			if (fScrolledWidgets.contains(e.widget))
-				unscrollStyledText((StyledText) e.widget);
-			else {
-				fScrolledWidgetsShells.remove(e.widget);
-				((Shell) e.widget).removeControlListener(this);
-				((Shell) e.widget).removeDisposeListener(this);
+	/**
+	 * Paints the scroll tool directly on the scrolled widget. As the widget
+	 * moves its contents by copying them, the area of the tool has to be
+	 * repainted after every step.
+	 */
+	private class OverlayPainter implements PaintListener {
+		private Control widget;
+
+		/**
+		 * The tool's image, taken once per session so that painting doesn't
+		 * lock the shared resources
+		 */
+		private Image image;
+
+		private int x, y;
+
+		public void paintControl(PaintEvent e) {
+			e.gc.drawImage(image, x, y);
+		}
+
+		public void install(Control widget, Point cursorLocation) {
+			this.widget = widget;
+			image = ScrollToolResources.get(fDisplay).getOverlayImage(
+					fToolRadius);
+			Point location = widget.toControl(cursorLocation);
+			x = location.x - fToolRadius;
+			y = location.y - fToolRadius;
+			widget.addPaintListener(this);
+			widget.redraw(x, y, 2 * fToolRadius, 2 * fToolRadius, false);
+		}
+
+		public void uninstall() {
+			if (widget == null)
+				return;
+			if (!widget.isDisposed()) {
+				widget.removePaintListener(this);
+				widget.redraw(x, y, 2 * fToolRadius, 2 * fToolRadius, false);
 			}
+			widget = null;
+			image = null;
+		}
+
+		/**
+		 * Repaints the tool after the widget has been scrolled by given
+		 * distance. The copy of the tool moved together with the contents is
+		 * repainted too.
+		 */
+		public void scrolled(int horizontal, int vertical) {
+			if (widget == null)
+				return;
+			int dx = Math.abs(horizontal);
+			int dy = Math.abs(vertical);
+			widget.redraw(x - dx, y - dy, 2 * (fToolRadius + dx),
+					2 * (fToolRadius + dy), false);
+		}
+	}
+
+	/**
+	 * Applies changed preferences without restart. The acceleration profile
+	 * is rebuilt at the next activation, the scroll tool is recreated with
+	 * the new size and the widget filter is replaced.
+	 */
+	private class PreferenceListener implements IPropertyChangeListener {
+		public void propertyChange(PropertyChangeEvent event) {
+			final String property = event.getProperty();
+			if (fDisplay.isDisposed())
+				return;
+			fDisplay.asyncExec(new Runnable() {
+				public void run() {
+					preferenceChanged(property);
+				}
+			});
 		}
 	}
 
 	private final ScrollLisener listener = new ScrollLisener();
 
-	private final int SCROLL_TOOL_RADIUS = 12;
+	private final SessionFilter sessionFilter = new SessionFilter();
 
-	private static HashMap scrolledDisplays = new HashMap();
+	private final PreferenceListener preferenceListener = new PreferenceListener();
+
+	private final int MIN_SCROLL_TOOL_RADIUS = 4;
+
+	/**
+	 * Interval (in milliseconds) of checking the location of the cursor while
+	 * the engine is parked and the cursor may be outside of the display's
+	 * windows
+	 */
+	private static final int CURSOR_POLL_INTERVAL = 50;
+
+	private final int MAX_SCROLL_TOOL_RADIUS = 64;
+
+	/**
+	 * Key of the widget's data holding its {@link TextViewer}
+	 */
+	private static final String VIEWER_KEY = Activator.PLUGIN_ID
+			+ ".textViewer";
+
+	/**
+	 * Key of the widget's data marking it as added because it was accepted by
+	 * {@link #fWidgetFilter}. Such widgets are checked again when clicked,
+	 * since the filter may have changed in the meantime.
+	 */
+	/**
+	 * Key of the widget's data holding the configuration of its viewer, if
+	 * known
+	 */
+	private static final String CONFIGURATION_KEY = Activator.PLUGIN_ID
+			+ ".configuration";
 
-	private Image fScrollerImage;
+	private static final String DETECTED_KEY = Activator.PLUGIN_ID
+			+ ".detected";
+
+	/**
+	 * Scrollers of the displays that have scrolled widgets. An entry is
+	 * removed when its scroller is disposed, which also happens when its
+	 * display is disposed.
+	 */
+	private static HashMap scrolledDisplays = new HashMap();
 
-	private HashSet fScrolledWidgets = new HashSet();
+	/**
+	 * Displays whose disposal disposes their scroller. An entry is removed
+	 * when its display is disposed.
+	 */
+	private static HashSet hookedDisplays = new HashSet();
 
-	private HashSet fScrolledWidgetsShells = new HashSet();
+	private final WidgetRegistry fRegistry = new WidgetRegistry(listener,
+			listener, listener, listener);
 
 	private Shell fScrollTool;
 
+	private final OverlayPainter fOverlayPainter = new OverlayPainter();
+
 	private Display fDisplay;
 
-	private ScrollingThread fScrollingThread;
+	/**
+	 * Radius of the scroll tool in pixels, scaled according to the display's
+	 * resolution
+	 */
+	private int fToolRadius;
+
+	/**
+	 * If not null, any supported widget accepted by this filter is scrolled,
+	 * not only the ones that have been added explicitly
+	 */
+	private WidgetFilter fWidgetFilter;
+
+	/**
+	 * The mouse down event that has stopped scrolling. The same event may then
+	 * reach the widget's listener, which must not start scrolling again.
+	 */
+	private Event fDeactivatingEvent;
+
+	private ScrollingTimer fScrollingTimer;
+
+	/**
+	 * The acceleration profile built from current preferences, or null if it
+	 * has to be rebuilt
+	 */
+	private AccelerationProfile fProfile;
 
 	private StyledTextScroller(Display display) {
 		fDisplay = display;
-		fDisplay.addFilter(SWT.MouseDown, listener);
-		fDisplay.addFilter(SWT.MouseUp, listener);
+		fToolRadius = getToolRadius();
+		ScrollStatistics statistics = ScrollStatistics.getDefault();
+		if (statistics != null)
+			statistics.displaysChanged(1);
+		Activator.getDefault().getPreferenceStore().addPropertyChangeListener(
+				preferenceListener);
 	}
 
 	/**
-	 * Adds scrolling functionality to given {@link StyledText} widget. This
-	 * method should be called from GUI thread of the widget's display.
+	 * 
+	 * @return radius of the scroll tool given by preferences, scaled according
+	 *         to the display's resolution
+	 */
+	private int getToolRadius() {
+		int radius = Activator.getDefault().getPreferenceStore().getInt(
+				PreferenceConstants.SCROLL_TOOL_RADIUS);
+		radius = Math.max(MIN_SCROLL_TOOL_RADIUS, Math.min(radius,
+				MAX_SCROLL_TOOL_RADIUS));
+		return radius * ScrollToolResources.getZoom(fDisplay) / 100;
+	}
+
+	private AccelerationProfile getProfile() {
+		if (fProfile == null) {
+			IPreferenceStore store = Activator.getDefault()
+					.getPreferenceStore();
+			try {
+				fProfile = new AccelerationProfile(store
+						.getString(PreferenceConstants.ACCELERATION_PROFILE),
+						store.getInt(PreferenceConstants.ACCELERATION_GAIN),
+						store.getString(PreferenceConstants.ACCELERATION_POINTS));
+			} catch (IllegalArgumentException e) {
+				Activator.getDefault().getLog().log(
+						new Status(IStatus.WARNING, Activator.PLUGIN_ID,
+								"Invalid acceleration profile, using the default one", e));
+				fProfile = AccelerationProfile.DEFAULT;
+			}
+		}
+		return fProfile;
+	}
+
+	private void preferenceChanged(String property) {
+		if (scrolledDisplays.get(fDisplay) != this)
+			return;
+		if (PreferenceConstants.ACCELERATION_PROFILE.equals(property)
+				|| PreferenceConstants.ACCELERATION_GAIN.equals(property)
+				|| PreferenceConstants.ACCELERATION_POINTS.equals(property)) {
+			fProfile = null;
+		} else if (PreferenceConstants.SCROLL_TOOL_RADIUS.equals(property)) {
+			deactivate();
+			fToolRadius = getToolRadius();
+			if (fScrollTool != null)
+				fScrollTool.dispose();
+			fScrollTool = null;
+		} else if (fWidgetFilter != null
+				&& (PreferenceConstants.INCLUDED_WIDGETS.equals(property)
+						|| PreferenceConstants.EXCLUDED_WIDGETS.equals(property))) {
+			IPreferenceStore store = Activator.getDefault()
+					.getPreferenceStore();
+			fWidgetFilter = new WidgetFilter(store
+					.getString(PreferenceConstants.INCLUDED_WIDGETS), store
+					.getString(PreferenceConstants.EXCLUDED_WIDGETS));
+		}
+	}
+
+	/**
+	 * Adds scrolling functionality to given widget. This method should be
+	 * called from GUI thread of the widget's display.
 	 * 
 	 * @param widget
-	 *            the widget to scroll
+	 *            the widget to scroll. It's scrolled only if it's supported
+	 *            by {@link ControlTarget} at the moment the middle button is
+	 *            pressed.
+	 */
+	public synchronized static void addControl(Scrollable widget) {
+		getScroller(widget.getDisplay()).scrollControl(widget);
+	}
+
+	/**
+	 * Adds scrolling functionality to the text widget of given viewer. While
+	 * the widget is scrolled, syntax highlighting of the lines that are about
+	 * to be shown is prepared in advance. This method should be called from
+	 * GUI thread of the widget's display.
+	 * 
+	 * @param viewer
+	 *            the viewer whose widget should be scrolled
+	 */
+	public synchronized static void addTextViewer(TextViewer viewer) {
+		addTextViewer(viewer, null);
+	}
+
+	/**
+	 * Adds scrolling functionality to the text widget of given viewer. While
+	 * the widget is scrolled, syntax highlighting of the lines that are about
+	 * to be shown is prepared in advance with the presentation reconciler of
+	 * given configuration. This method should be called from GUI thread of
+	 * the widget's display.
+	 * 
+	 * @param viewer
+	 *            the viewer whose widget should be scrolled
+	 * @param configuration
+	 *            the configuration the viewer has been configured with, or
+	 *            null if it's unknown
+	 */
+	public synchronized static void addTextViewer(TextViewer viewer,
+			SourceViewerConfiguration configuration) {
+		StyledText widget = viewer.getTextWidget();
+		widget.setData(VIEWER_KEY, viewer);
+		widget.setData(CONFIGURATION_KEY, configuration);
+		addControl(widget);
+	}
+
+	/**
+	 * Adds scrolling functionality to all supported widgets of given display
+	 * that are accepted by given filter. The widgets are detected when
+	 * the middle mouse button is pressed in them, so there's no need to add
+	 * them one by one. This method should be called from GUI thread of the
+	 * display.
+	 * 
+	 * @param display
+	 *            the display to scroll widgets in
+	 * @param filter
+	 *            the filter deciding which widgets can be scrolled
 	 */
-	public synchronized static void addStyledText(StyledText widget) {
-		Display display = widget.getDisplay();
+	public synchronized static void addAllControls(Display display,
+			WidgetFilter filter) {
+		StyledTextScroller scroller = getScroller(display);
+		if (scroller.fWidgetFilter == null)
+			display.addFilter(SWT.MouseDown, scroller.listener);
+		scroller.fWidgetFilter = filter;
+	}
+
+	/**
+	 * Returns the scroller of given display, creating it if necessary. The
+	 * first time a display is seen, a hook is added that disposes its scroller
+	 * together with the display. The hook refers to the display only, so
+	 * scrollers disposed and created again in the meantime are not kept. Both
+	 * entries of the display are removed when it's disposed, even if disposing
+	 * the scroller fails.
+	 */
+	private static StyledTextScroller getScroller(final Display display) {
 		StyledTextScroller scroller = (StyledTextScroller) scrolledDisplays
 				.get(display);
 		if (scroller == null) {
 			scroller = new StyledTextScroller(display);
 			scrolledDisplays.put(display, scroller);
 		}
-		scroller.scrollStyledText(widget);
+		if (hookedDisplays.add(display)) {
+			display.disposeExec(new Runnable() {
+				public void run() {
+					synchronized (StyledTextScroller.class) {
+						hookedDisplays.remove(display);
+						StyledTextScroller scroller = (StyledTextScroller) scrolledDisplays
+								.get(display);
+						try {
+							if (scroller != null)
+								scroller.dispose();
+						} finally {
+							scrolledDisplays.remove(display);
+						}
+					}
+				}
+			});
+		}
+		return scroller;
 	}
 
-	private void scrollStyledText(StyledText widget) {
-		if (fScrolledWidgets.contains(widget))
-			return;
-		fScrolledWidgets.add(widget);
-		widget.addFocusListener(listener);
-		widget.addDisposeListener(listener);
+	private boolean isScrollable(Widget widget) {
+		if (fRegistry.contains(widget)) {
+			if (widget.getData(DETECTED_KEY) != null
+					&& (fWidgetFilter == null || !fWidgetFilter
+							.accepts((Control) widget))) {
+				widget.setData(DETECTED_KEY, null);
+				unscrollControl((Control) widget);
+				return false;
+			}
+			return ControlTarget.isSupported((Control) widget);
+		}
+		if (fWidgetFilter != null && widget instanceof Control
+				&& ControlTarget.isSupported((Control) widget)
+				&& fWidgetFilter.accepts((Control) widget)) {
+			scrollControl((Control) widget);
+			widget.setData(DETECTED_KEY, Boolean.TRUE);
+			return true;
+		}
+		return false;
+	}
 
-		Shell widgetShell = widget.getShell();
-		if (fScrolledWidgetsShells.contains(widgetShell))
-			return;
-		fScrolledWidgetsShells.add(widgetShell);
-		widgetShell.addControlListener(listener);
-		widgetShell.addDisposeListener(listener);
+	private void scrollControl(Control widget) {
+		/* widgets added explicitly don't depend on the filter */
+		widget.setData(DETECTED_KEY, null);
+		fRegistry.add(widget);
 	}
 
 	/**
-	 * Removes scrolling functionality from given {@link StyledText} widget.
-	 * This method should be called from GUI thread of the widget's display.
+	 * Removes scrolling functionality from given widget. This method should be
+	 * called from GUI thread of the widget's display.
 	 * 
 	 * @param widget
 	 *            the widget to stop scrolling
 	 */
-	public synchronized static void removeStyledText(StyledText widget) {
+	public synchronized static void removeControl(Scrollable widget) {
+		widget.setData(VIEWER_KEY, null);
+		widget.setData(CONFIGURATION_KEY, null);
+		widget.setData(DETECTED_KEY, null);
+		if (widget instanceof StyledText) {
+			LineOffsetIndex.remove((StyledText) widget);
+			PresentationWarmer.remove((StyledText) widget);
+		}
 		StyledTextScroller scroller = (StyledTextScroller) scrolledDisplays
 				.get(widget.getDisplay());
 		if (scroller != null)
-			scroller.unscrollStyledText(widget);
+			scroller.unscrollControl(widget);
 	}
 
 	/**
@@ -368,151 +875,151 @@ public class StyledTextScroller {
 			Display display = (Display) iterator.next();
 			final StyledTextScroller scroller = (StyledTextScroller) scrolledDisplays
 					.get(display);
+			if (display.isDisposed()) {
+				scrolledDisplays.remove(display);
+				hookedDisplays.remove(display);
+				continue;
+			}
 			display.asyncExec(new Runnable() {
 				public void run() {
 					scroller.dispose();
+					ScrollToolResources.dispose(scroller.fDisplay);
 				}
 			});
 		}
 	}
 
-	private void unscrollStyledText(StyledText widget) {
-		if (!fScrolledWidgets.contains(widget))
+	/**
+	 * @return number of displays that currently have a scroller
+	 */
+	synchronized static int getScrolledDisplayCount() {
+		return scrolledDisplays.size();
+	}
+
+	/**
+	 * @return number of displays whose disposal is currently hooked
+	 */
+	synchronized static int getHookedDisplayCount() {
+		return hookedDisplays.size();
+	}
+
+	private void unscrollControl(Control widget) {
+		if (!fRegistry.contains(widget))
 			return;
-		fScrolledWidgets.remove(widget);
-		widget.removeFocusListener(listener);
-		widget.removeDisposeListener(listener);
-		if (fScrolledWidgets.size() == 0)
+		if (fScrollingTimer != null && fScrollingTimer.isScrolling(widget))
+			deactivate();
+		fRegistry.remove(widget);
+		disposeIfUnused();
+	}
+
+	private void disposeIfUnused() {
+		if (fRegistry.getWidgetCount() == 0 && fWidgetFilter == null)
 			dispose();
 	}
 
 	private void dispose() {
-		if (fScrollingThread != null)
-			fScrollingThread.interrupt();
-		if (fScrollerImage != null)
-			fScrollerImage.dispose();
+		deactivate();
 		if (fScrollTool != null)
 			fScrollTool.dispose();
-		for (Iterator iterator = fScrolledWidgets.iterator(); iterator
-				.hasNext();) {
-			StyledText widget = (StyledText) iterator.next();
-			widget.removeFocusListener(listener);
-			widget.removeDisposeListener(listener);
-		}
-		fScrolledWidgets.clear();
+		fScrollTool = null;
+		fRegistry.clear();
 
+		if (scrolledDisplays.get(fDisplay) != this)
+			return;
 		scrolledDisplays.remove(fDisplay);
-		fDisplay.removeFilter(SWT.MouseDown, listener);
-		fDisplay.removeFilter(SWT.MouseUp, listener);
+		ScrollStatistics statistics = ScrollStatistics.getDefault();
+		if (statistics != null)
+			statistics.displaysChanged(-1);
+		Activator activator = Activator.getDefault();
+		if (activator != null)
+			activator.getPreferenceStore().removePropertyChangeListener(
+					preferenceListener);
+		if (fWidgetFilter != null)
+			fDisplay.removeFilter(SWT.MouseDown, listener);
+		fWidgetFilter = null;
 	}
 
 	private boolean isActive() {
-		return fScrollingThread != null && fScrollingThread.isActive();
+		return fScrollingTimer != null && fScrollingTimer.isActive();
 	}
 
-	private void activate(StyledText widget) {
+	private void activate(Control widget, boolean jump, long activationTime) {
 		if (isActive())
 			return;
 
-		if (fScrollTool == null) {
-			createScrollTool();
-		}
 		Point cursorLocation = fDisplay.getCursorLocation();
-		fScrollTool.setLocation(cursorLocation.x - SCROLL_TOOL_RADIUS,
-				cursorLocation.y - SCROLL_TOOL_RADIUS);
-		fScrollTool.setVisible(true);
-
-		if (fScrollingThread == null)
-			fScrollingThread = new ScrollingThread();
-
-		fScrollingThread.activate(widget, cursorLocation);
-	}
-
-	private void draw8Points(GC gc, int x, int y) {
-		gc.drawPoint(SCROLL_TOOL_RADIUS + x - 1, SCROLL_TOOL_RADIUS + y - 1);
-		gc.drawPoint(SCROLL_TOOL_RADIUS + x - 1, SCROLL_TOOL_RADIUS - y);
-		gc.drawPoint(SCROLL_TOOL_RADIUS - x, SCROLL_TOOL_RADIUS + y - 1);
-		gc.drawPoint(SCROLL_TOOL_RADIUS - x, SCROLL_TOOL_RADIUS - y);
-		gc.drawPoint(SCROLL_TOOL_RADIUS + y - 1, SCROLL_TOOL_RADIUS + x - 1);
-		gc.drawPoint(SCROLL_TOOL_RADIUS + y - 1, SCROLL_TOOL_RADIUS - x);
-		gc.drawPoint(SCROLL_TOOL_RADIUS - y, SCROLL_TOOL_RADIUS + x - 1);
-		gc.drawPoint(SCROLL_TOOL_RADIUS - y, SCROLL_TOOL_RADIUS - x);
-	}
+		String indicatorStyle = Activator.getDefault().getPreferenceStore()
+				.getString(PreferenceConstants.INDICATOR_STYLE);
+		if (PreferenceConstants.INDICATOR_OVERLAY.equals(indicatorStyle)) {
+			fOverlayPainter.install(widget, cursorLocation);
+		} else {
+			if (fScrollTool == null || fScrollTool.isDisposed()) {
+				createScrollTool();
+			}
+			fScrollTool.setLocation(cursorLocation.x - fToolRadius,
+					cursorLocation.y - fToolRadius);
+			fScrollTool.setVisible(true);
+		}
 
-	private Image getScrollerImage() {
-		if (fScrollerImage == null) {
-			fScrollerImage = new Image(fDisplay, 2 * SCROLL_TOOL_RADIUS,
-					2 * SCROLL_TOOL_RADIUS);
-			GC gc = new GC(fScrollerImage);
-
-			for (int x = 0; x < SCROLL_TOOL_RADIUS; x++)
-				for (int y = x; y < SCROLL_TOOL_RADIUS; y++) {
-					int angleFactor = SCROLL_TOOL_RADIUS
-							- Math.max(2, Math.max(x - y, y - x));
-					int brightness = 255 - 255 * (x * x + y * y)
-							/ SCROLL_TOOL_RADIUS / SCROLL_TOOL_RADIUS
-							/ angleFactor;
-					Color color = new Color(fDisplay, brightness, brightness,
-							brightness);
-					gc.setForeground(color);
-					draw8Points(gc, x, y);
-					color.dispose();
-				}
-			int arrowBrightness = 55;
-			Color color = new Color(fDisplay, arrowBrightness, arrowBrightness,
-					arrowBrightness);
-			gc.setForeground(color);
-			for (int x = 1; x <= SCROLL_TOOL_RADIUS / 3; x++)
-				for (int y = x; y <= SCROLL_TOOL_RADIUS / 3; y++)
-					draw8Points(gc, x, SCROLL_TOOL_RADIUS - y);
-			draw8Points(gc, 1, 1);
-			color.dispose();
-			arrowBrightness *= 2;
-			color = new Color(fDisplay, arrowBrightness, arrowBrightness,
-					arrowBrightness);
-			gc.setForeground(color);
-			draw8Points(gc, SCROLL_TOOL_RADIUS / 3, SCROLL_TOOL_RADIUS
-					- SCROLL_TOOL_RADIUS / 3 - 1);
-			draw8Points(gc, 1, 2);
-			color.dispose();
-			gc.dispose();
-		}
-		return fScrollerImage;
+		if (fScrollingTimer == null)
+			fScrollingTimer = new ScrollingTimer();
+
+		ScrollStatistics statistics = ScrollStatistics.getDefault();
+		if (statistics != null)
+			statistics.sessionStarted();
+		fScrollingTimer.activate(widget, cursorLocation, jump, activationTime);
+		fDisplay.addFilter(SWT.MouseDown, sessionFilter);
+		fDisplay.addFilter(SWT.MouseUp, sessionFilter);
+		fDisplay.addFilter(SWT.KeyDown, sessionFilter);
+		fDisplay.addFilter(SWT.MouseWheel, sessionFilter);
+		fDisplay.addFilter(SWT.MouseMove, sessionFilter);
+		fDisplay.addFilter(SWT.MouseExit, sessionFilter);
 	}
 
 	private void deactivate() {
 		if (!isActive())
 			return;
 
-		fScrollTool.dispose();
-		fScrollTool = null;
-		fScrollingThread.deactivate();
+		hideScrollTool();
+		fScrollingTimer.deactivate();
+		fDisplay.removeFilter(SWT.MouseDown, sessionFilter);
+		fDisplay.removeFilter(SWT.MouseUp, sessionFilter);
+		fDisplay.removeFilter(SWT.KeyDown, sessionFilter);
+		fDisplay.removeFilter(SWT.MouseWheel, sessionFilter);
+		fDisplay.removeFilter(SWT.MouseMove, sessionFilter);
+		fDisplay.removeFilter(SWT.MouseExit, sessionFilter);
+
+		ScrollStatistics statistics = ScrollStatistics.getDefault();
+		if (statistics != null)
+			statistics.sessionEnded();
 	}
 
-	private void createScrollTool() {
-		fScrollTool = new Shell(fDisplay, SWT.NO_TRIM | SWT.TOOL | SWT.ON_TOP);
-		fScrollTool.setSize(SCROLL_TOOL_RADIUS * 2, SCROLL_TOOL_RADIUS * 2);
-		Region region = new Region();
-		region.add(createCirclePolygon(SCROLL_TOOL_RADIUS));
-		fScrollTool.setRegion(region);
-		region.dispose();
-		final Image image = getScrollerImage();
-		fScrollTool.setBackgroundImage(image);
+	/**
+	 * Handles release of the middle button after the visible area has been
+	 * moved. The scroll tool is hidden even if the widget keeps moving.
+	 */
+	private void release() {
+		if (fScrollingTimer.release())
+			hideScrollTool();
+		else
+			deactivate();
+	}
+
+	private void hideScrollTool() {
+		if (fScrollTool != null && !fScrollTool.isDisposed())
+			fScrollTool.setVisible(false);
+		fOverlayPainter.uninstall();
 	}
 
-	private int[] createCirclePolygon(int r) {
-		int[] result = new int[8 * r - 4];
-		for (int y = 1; y <= r; y++) {
-			int x = (int) Math.sqrt(r * r - y * y);
-			result[2 * y - 2] = r + x;
-			result[2 * y + 1 - 2] = r + y;
-			result[2 * (2 * r - y) - 2] = r - x;
-			result[2 * (2 * r - y) + 1 - 2] = r + y;
-			result[2 * (2 * r + y) - 4] = r - x;
-			result[2 * (2 * r + y) + 1 - 4] = r - y;
-			result[2 * (4 * r - y) - 4] = r + x;
-			result[2 * (4 * r - y) + 1 - 4] = r - y;
-		}
-		return result;
+	/**
+	 * Creates the window showing the scroll tool. It is created only once and
+	 * then hidden and shown again for every scrolling.
+	 */
+	private void createScrollTool() {
+		ScrollToolResources resources = ScrollToolResources.get(fDisplay);
+		fScrollTool = new Shell(fDisplay, SWT.NO_TRIM | SWT.TOOL | SWT.ON_TOP);
+		fScrollTool.setSize(fToolRadius * 2, fToolRadius * 2);
+		fScrollTool.setRegion(resources.getRegion(fToolRadius));
+		fScrollTool.setBackgroundImage(resources.getImage(fToolRadius));
 	}
 }
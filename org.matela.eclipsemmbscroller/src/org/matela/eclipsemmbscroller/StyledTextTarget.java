@@ -0,0 +1,98 @@
+/*******************************************************************************
+ * Copyright (c) 2009 Mateusz Matela.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Mateusz Matela - initial API and implementation
+ *******************************************************************************/
+package org.matela.eclipsemmbscroller;
+
+import org.eclipse.swt.custom.StyledText;
+
+/**
+ * Moves the visible area of a {@link StyledText} by pixels. If its lines
+ * differ in height, a move beyond the visible area is translated with the
+ * widget's {@link LineOffsetIndex} to the new top line and an offset within
+ * it, so that the widget doesn't have to measure every line passed over.
+ * 
+ * @author Mateusz Matela
+ */
+class StyledTextTarget extends ControlTarget {
+
+	private final StyledText widget;
+
+	private final LineOffsetIndex index;
+
+	/**
+	 * Height of the visible area. Resizing the widget ends the scrolling, so
+	 * it's computed only once.
+	 */
+	private final int clientHeight;
+
+	public StyledTextTarget(StyledText widget) {
+		super(widget);
+		this.widget = widget;
+		index = LineOffsetIndex.get(widget);
+		clientHeight = widget.getClientArea().height;
+	}
+
+	public int getLineHeight() {
+		return widget.getLineHeight();
+	}
+
+	public int getLineCount() {
+		return widget.getLineCount();
+	}
+
+	public int getTopLine() {
+		return widget.getTopIndex();
+	}
+
+	public void scrollPixels(int horizontal, int vertical) {
+		if (vertical != 0) {
+			if (index.measureVisibleLines(clientHeight))
+				widget.setTopPixel(widget.getTopPixel() + vertical);
+			else
+				scrollByIndex(vertical);
+		}
+		if (horizontal != 0)
+			widget.setHorizontalPixel(widget.getHorizontalPixel() + horizontal);
+	}
+
+	public void scrollLines(int horizontal, int lines) {
+		widget.setRedraw(false);
+		try {
+			if (lines != 0)
+				widget.setTopIndex(widget.getTopIndex() + lines);
+			if (horizontal != 0)
+				widget.setHorizontalPixel(widget.getHorizontalPixel()
+						+ horizontal);
+		} finally {
+			widget.setRedraw(true);
+		}
+	}
+
+	private void scrollByIndex(int vertical) {
+		int top = widget.getTopIndex();
+		int current = index.getOffset(top) - widget.getLinePixel(top);
+		int maxOffset = Math.max(0, index.getTotalHeight() - clientHeight);
+		int offset = Math.max(0, Math.min(current + vertical, maxOffset));
+		int line = index.getLine(offset);
+		if (Math.abs(line - top) * widget.getLineHeight() <= clientHeight) {
+			widget.setTopPixel(widget.getTopPixel() + offset - current);
+			return;
+		}
+		widget.setRedraw(false);
+		try {
+			widget.setTopIndex(line);
+			int rest = offset - index.getOffset(line);
+			if (rest > 0 && widget.getTopIndex() == line)
+				widget.setTopPixel(widget.getTopPixel() + rest);
+		} finally {
+			widget.setRedraw(true);
+		}
+	}
+}
@@ -0,0 +1,65 @@
+/*******************************************************************************
+ * Copyright (c) 2009 Mateusz Matela.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Mateusz Matela - initial API and implementation
+ *******************************************************************************/
+package org.matela.eclipsemmbscroller;
+
+import org.eclipse.swt.widgets.Table;
+
+/**
+ * Moves the visible area of a {@link Table} by whole rows with
+ * {@link Table#setTopIndex(int)}. Pixel distances are accumulated until they
+ * add up to a row. In a virtual table only the rows that become visible are
+ * created. Horizontal scrolling is not supported, as a native table can't be
+ * moved horizontally by a program.
+ * 
+ * @author Mateusz Matela
+ */
+class TableTarget extends ControlTarget {
+
+	private final Table table;
+
+	private int pixelRemainder;
+
+	public TableTarget(Table table) {
+		super(table);
+		this.table = table;
+	}
+
+	public int getLineHeight() {
+		return Math.max(1, table.getItemHeight());
+	}
+
+	public int getLineCount() {
+		return table.getItemCount();
+	}
+
+	public int getTopLine() {
+		return table.getTopIndex();
+	}
+
+	public void scrollPixels(int horizontal, int vertical) {
+		int itemHeight = getLineHeight();
+		pixelRemainder += vertical;
+		int lines = pixelRemainder / itemHeight;
+		pixelRemainder -= lines * itemHeight;
+		if (lines != 0)
+			scrollLines(horizontal, lines);
+	}
+
+	public void scrollLines(int horizontal, int lines) {
+		int topIndex = table.getTopIndex();
+		int newTopIndex = Math.max(0, Math.min(topIndex + lines, table
+				.getItemCount() - 1));
+		if (newTopIndex != topIndex)
+			table.setTopIndex(newTopIndex);
+		if (table.getTopIndex() == topIndex)
+			pixelRemainder = 0;
+	}
+}
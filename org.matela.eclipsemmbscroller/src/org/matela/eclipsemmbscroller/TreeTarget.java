@@ -0,0 +1,189 @@
+/*******************************************************************************
+ * Copyright (c) 2009 Mateusz Matela.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Mateusz Matela - initial API and implementation
+ *******************************************************************************/
+package org.matela.eclipsemmbscroller;
+
+import org.eclipse.swt.widgets.Tree;
+import org.eclipse.swt.widgets.TreeItem;
+
+/**
+ * Moves the visible area of a {@link Tree} by whole rows with
+ * {@link Tree#setTopItem(TreeItem)}. Pixel distances are accumulated until
+ * they add up to a row. The new top item is found by walking through visible
+ * items from the current one, and the walk is limited to one page per frame,
+ * so in a virtual tree only the items that become visible are created.
+ * Horizontal scrolling is not supported, as a native tree can't be moved
+ * horizontally by a program.
+ * 
+ * @author Mateusz Matela
+ */
+class TreeTarget extends ControlTarget {
+
+	private final Tree tree;
+
+	private int pixelRemainder;
+
+	/**
+	 * The item visited last by the walk
+	 */
+	private TreeItem current;
+
+	/**
+	 * Index of {@link #current} among its siblings
+	 */
+	private int currentIndex;
+
+	/**
+	 * The top item that couldn't be moved in the direction of
+	 * {@link #stuckLines}, because the tree has ended
+	 */
+	private TreeItem stuckItem;
+
+	private int stuckLines;
+
+	/**
+	 * Number of rows in the visible area. Resizing the tree ends the
+	 * scrolling, so it's computed only once.
+	 */
+	private final int page;
+
+	public TreeTarget(Tree tree) {
+		super(tree);
+		this.tree = tree;
+		page = Math.max(1, tree.getClientArea().height / getLineHeight());
+	}
+
+	public int getLineHeight() {
+		return Math.max(1, tree.getItemHeight());
+	}
+
+	/**
+	 * Counting all visible items would require walking through the whole
+	 * tree, so only the top level items are counted.
+	 */
+	public int getLineCount() {
+		return tree.getItemCount();
+	}
+
+	/**
+	 * Like {@link #getLineCount()}, counts only the top level items: returns
+	 * the index of the top level item containing the top item.
+	 */
+	public int getTopLine() {
+		TreeItem top = tree.getTopItem();
+		if (top == null)
+			return 0;
+		while (top.getParentItem() != null)
+			top = top.getParentItem();
+		return tree.indexOf(top);
+	}
+
+	public void scrollPixels(int horizontal, int vertical) {
+		int itemHeight = getLineHeight();
+		pixelRemainder += vertical;
+		int lines = pixelRemainder / itemHeight;
+		pixelRemainder -= lines * itemHeight;
+		if (lines != 0)
+			scrollLines(horizontal, lines);
+	}
+
+	public void scrollLines(int horizontal, int lines) {
+		TreeItem top = tree.getTopItem();
+		if (top == null || lines == 0)
+			return;
+		if (top == stuckItem && (lines > 0) == (stuckLines > 0)) {
+			pixelRemainder = 0;
+			return;
+		}
+		lines = Math.max(-page, Math.min(lines, page));
+
+		if (top != current)
+			currentIndex = indexOf(top);
+		current = top;
+		for (int i = 0; i < Math.abs(lines); i++) {
+			if (!(lines > 0 ? walkDown() : walkUp()))
+				break;
+		}
+		if (current == top) {
+			stuckItem = top;
+			stuckLines = lines;
+			pixelRemainder = 0;
+			return;
+		}
+		tree.setTopItem(current);
+		if (tree.getTopItem() != current) {
+			/* the end of the tree doesn't let the top item move that far */
+			stuckItem = tree.getTopItem();
+			stuckLines = lines;
+			pixelRemainder = 0;
+		} else {
+			stuckItem = null;
+		}
+	}
+
+	/**
+	 * Moves {@link #current} to the next visible item
+	 * 
+	 * @return false if there is no next item
+	 */
+	private boolean walkDown() {
+		if (current.getExpanded() && current.getItemCount() > 0) {
+			current = current.getItem(0);
+			currentIndex = 0;
+			return true;
+		}
+		TreeItem item = current;
+		int index = currentIndex;
+		while (true) {
+			TreeItem parent = item.getParentItem();
+			int count = parent == null ? tree.getItemCount() : parent
+					.getItemCount();
+			if (index + 1 < count) {
+				current = parent == null ? tree.getItem(index + 1) : parent
+						.getItem(index + 1);
+				currentIndex = index + 1;
+				return true;
+			}
+			if (parent == null)
+				return false;
+			item = parent;
+			index = indexOf(parent);
+		}
+	}
+
+	/**
+	 * Moves {@link #current} to the previous visible item
+	 * 
+	 * @return false if there is no previous item
+	 */
+	private boolean walkUp() {
+		TreeItem parent = current.getParentItem();
+		if (currentIndex == 0) {
+			if (parent == null)
+				return false;
+			current = parent;
+			currentIndex = indexOf(parent);
+			return true;
+		}
+		currentIndex--;
+		current = parent == null ? tree.getItem(currentIndex) : parent
+				.getItem(currentIndex);
+		while (current.getExpanded() && current.getItemCount() > 0) {
+			currentIndex = current.getItemCount() - 1;
+			current = current.getItem(currentIndex);
+		}
+		return true;
+	}
+
+	private int indexOf(TreeItem item) {
+		TreeItem parent = item.getParentItem();
+		return parent == null ? tree.indexOf(item) : parent.indexOf(item);
+	}
+}
@@ -0,0 +1,77 @@
+/*******************************************************************************
+ * Copyright (c) 2009 Mateusz Matela.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Mateusz Matela - initial API and implementation
+ *******************************************************************************/
+package org.matela.eclipsemmbscroller;
+
+import java.util.StringTokenizer;
+
+import org.eclipse.swt.widgets.Control;
+
+/**
+ * Decides which widgets can be scrolled when they are detected at the moment
+ * of middle button click. The rules are lists of class name prefixes. A widget
+ * matches a rule if its class or the class of any of its parents starts with
+ * one of the prefixes.
+ * 
+ * @author Mateusz Matela
+ */
+public class WidgetFilter {
+
+	private final String[] includes;
+
+	private final String[] excludes;
+
+	/**
+	 * 
+	 * @param includes
+	 *            comma separated class name prefixes of widgets that can be
+	 *            scrolled. If empty, all widgets not excluded can be scrolled.
+	 * @param excludes
+	 *            comma separated class name prefixes of widgets that can't be
+	 *            scrolled
+	 */
+	public WidgetFilter(String includes, String excludes) {
+		this.includes = split(includes);
+		this.excludes = split(excludes);
+	}
+
+	/**
+	 * 
+	 * @param widget
+	 *            the widget to check
+	 * @return true if the widget can be scrolled
+	 */
+	public boolean accepts(Control widget) {
+		if (excludes.length > 0 && matches(widget, excludes))
+			return false;
+		return includes.length == 0 || matches(widget, includes);
+	}
+
+	private boolean matches(Control widget, String[] prefixes) {
+		for (Control c = widget; c != null; c = c.getParent()) {
+			String className = c.getClass().getName();
+			for (int i = 0; i < prefixes.length; i++) {
+				if (className.startsWith(prefixes[i]))
+					return true;
+			}
+		}
+		return false;
+	}
+
+	private static String[] split(String prefixes) {
+		if (prefixes == null)
+			return new String[0];
+		StringTokenizer tokenizer = new StringTokenizer(prefixes, ", \t");
+		String[] result = new String[tokenizer.countTokens()];
+		for (int i = 0; i < result.length; i++)
+			result[i] = tokenizer.nextToken();
+		return result;
+	}
+}
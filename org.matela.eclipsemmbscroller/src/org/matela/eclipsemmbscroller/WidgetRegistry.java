@@ -0,0 +1,252 @@
+/*******************************************************************************
+ * Copyright (c) 2009 Mateusz Matela.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Mateusz Matela - initial API and implementation
+ *******************************************************************************/
+package org.matela.eclipsemmbscroller;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.events.ControlListener;
+import org.eclipse.swt.events.DisposeListener;
+import org.eclipse.swt.events.FocusListener;
+import org.eclipse.swt.widgets.Control;
+import org.eclipse.swt.widgets.Listener;
+import org.eclipse.swt.widgets.Shell;
+import org.eclipse.swt.widgets.Widget;
+
+/**
+ * Widgets that can be scrolled and shells containing them, together with the
+ * listeners added to them. Widgets are compared by identity. A shell is kept
+ * only as long as it contains at least one registered widget, so removing the
+ * last widget of a shell removes the shell's listeners too. Entries of
+ * widgets disposed without notification are purged when a widget is added
+ * and the number of entries has doubled since the last purge, so the cost of
+ * purging is spread over the additions.
+ * 
+ * @author Mateusz Matela
+ */
+class WidgetRegistry {
+
+	/**
+	 * The smallest number of registered widgets at which adding a widget
+	 * purges disposed entries
+	 */
+	static final int MIN_PURGE_THRESHOLD = 16;
+
+	/**
+	 * Maps registered widgets to the shells their listeners were added to
+	 */
+	private final IdentityHashMap widgets = new IdentityHashMap();
+
+	/**
+	 * Maps shells to the numbers of registered widgets they contain
+	 */
+	private final IdentityHashMap shells = new IdentityHashMap();
+
+	private final Listener mouseListener;
+
+	private final FocusListener focusListener;
+
+	private final DisposeListener disposeListener;
+
+	private final ControlListener shellListener;
+
+	/**
+	 * Number of registered widgets at which the next addition purges
+	 * disposed entries
+	 */
+	private int purgeThreshold = MIN_PURGE_THRESHOLD;
+
+	/**
+	 * 
+	 * @param mouseListener
+	 *            listener for mouse down events in widgets
+	 * @param focusListener
+	 *            listener for focus changes of widgets
+	 * @param disposeListener
+	 *            listener for disposal of widgets and shells
+	 * @param shellListener
+	 *            listener for moving and resizing shells
+	 */
+	public WidgetRegistry(Listener mouseListener, FocusListener focusListener,
+			DisposeListener disposeListener, ControlListener shellListener) {
+		this.mouseListener = mouseListener;
+		this.focusListener = focusListener;
+		this.disposeListener = disposeListener;
+		this.shellListener = shellListener;
+	}
+
+	/**
+	 * 
+	 * @param widget
+	 *            the widget to check
+	 * @return true if given widget is registered
+	 */
+	public boolean contains(Widget widget) {
+		return widgets.containsKey(widget);
+	}
+
+	/**
+	 * 
+	 * @param widget
+	 *            the widget to check
+	 * @return true if given widget is a registered shell
+	 */
+	public boolean containsShell(Widget widget) {
+		return shells.containsKey(widget);
+	}
+
+	/**
+	 * Registers given widget and adds listeners to it and its shell.
+	 * 
+	 * @param widget
+	 *            the widget to register
+	 */
+	public void add(Control widget) {
+		if (widgets.containsKey(widget))
+			return;
+		if (widgets.size() >= purgeThreshold) {
+			purge();
+			purgeThreshold = Math.max(2 * widgets.size(), MIN_PURGE_THRESHOLD);
+		}
+		Shell shell = widget.getShell();
+		widgets.put(widget, shell);
+		widget.addListener(SWT.MouseDown, mouseListener);
+		widget.addFocusListener(focusListener);
+		widget.addDisposeListener(disposeListener);
+
+		int[] count = (int[]) shells.get(shell);
+		ScrollStatistics statistics = ScrollStatistics.getDefault();
+		if (count != null) {
+			count[0]++;
+			if (statistics != null)
+				statistics.widgetsChanged(1, 0);
+			return;
+		}
+		shells.put(shell, new int[] { 1 });
+		shell.addControlListener(shellListener);
+		shell.addDisposeListener(disposeListener);
+		if (statistics != null)
+			statistics.widgetsChanged(1, 1);
+	}
+
+	/**
+	 * Unregisters given widget and removes listeners from it. If it was the
+	 * last registered widget of its shell, listeners are removed from the
+	 * shell too.
+	 * 
+	 * @param widget
+	 *            the widget to unregister
+	 */
+	public void remove(Control widget) {
+		Shell shell = (Shell) widgets.remove(widget);
+		if (shell == null)
+			return;
+		if (!widget.isDisposed()) {
+			widget.removeListener(SWT.MouseDown, mouseListener);
+			widget.removeFocusListener(focusListener);
+			widget.removeDisposeListener(disposeListener);
+		}
+		ScrollStatistics statistics = ScrollStatistics.getDefault();
+		if (statistics != null)
+			statistics.widgetsChanged(-1, 0);
+
+		int[] count = (int[]) shells.get(shell);
+		if (count != null && --count[0] == 0)
+			removeShell(shell);
+	}
+
+	/**
+	 * Unregisters given shell, for example because it's been disposed, and
+	 * all widgets it contains.
+	 * 
+	 * @param shell
+	 *            the shell to unregister
+	 */
+	public void removeShell(Shell shell) {
+		if (shells.remove(shell) == null)
+			return;
+		if (!shell.isDisposed()) {
+			shell.removeControlListener(shellListener);
+			shell.removeDisposeListener(disposeListener);
+		}
+		ScrollStatistics statistics = ScrollStatistics.getDefault();
+		if (statistics != null)
+			statistics.widgetsChanged(0, -1);
+		for (Iterator iterator = new ArrayList(widgets.entrySet()).iterator(); iterator
+				.hasNext();) {
+			Map.Entry entry = (Map.Entry) iterator.next();
+			if (entry.getValue() == shell)
+				remove((Control) entry.getKey());
+		}
+	}
+
+	/**
+	 * Unregisters all widgets and shells.
+	 */
+	public void clear() {
+		for (Iterator iterator = new ArrayList(shells.keySet()).iterator(); iterator
+				.hasNext();)
+			removeShell((Shell) iterator.next());
+	}
+
+	/**
+	 * Removes entries of widgets and shells that have been disposed, but
+	 * their disposal hasn't been reported. Every such entry means that a
+	 * dispose listener has been lost, so their number is reported to
+	 * {@link ScrollStatistics}.
+	 * 
+	 * @return the number of removed entries
+	 */
+	public int purge() {
+		int purged = 0;
+		for (Iterator iterator = new ArrayList(widgets.keySet()).iterator(); iterator
+				.hasNext();) {
+			Control widget = (Control) iterator.next();
+			if (widget.isDisposed()) {
+				remove(widget);
+				purged++;
+			}
+		}
+		for (Iterator iterator = new ArrayList(shells.keySet()).iterator(); iterator
+				.hasNext();) {
+			Shell shell = (Shell) iterator.next();
+			if (shell.isDisposed()) {
+				removeShell(shell);
+				purged++;
+			}
+		}
+		if (purged > 0) {
+			ScrollStatistics statistics = ScrollStatistics.getDefault();
+			if (statistics != null)
+				statistics.entriesPurged(purged);
+		}
+		return purged;
+	}
+
+	/**
+	 * 
+	 * @return the number of registered widgets
+	 */
+	public int getWidgetCount() {
+		return widgets.size();
+	}
+
+	/**
+	 * 
+	 * @return the number of shells containing registered widgets
+	 */
+	public int getShellCount() {
+		return shells.size();
+	}
+}
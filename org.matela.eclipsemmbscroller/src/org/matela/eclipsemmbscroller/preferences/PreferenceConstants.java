@@ -0,0 +1,134 @@
+/*******************************************************************************
+ * Copyright (c) 2009 Mateusz Matela.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Mateusz Matela - initial API and implementation
+ *******************************************************************************/
+package org.matela.eclipsemmbscroller.preferences;
+
+import org.matela.eclipsemmbscroller.AccelerationProfile;
+
+/**
+ * Constant definitions for plug-in preferences
+ * 
+ * @author Mateusz Matela
+ */
+public class PreferenceConstants {
+
+	/**
+	 * The way scrolling steps are timed. One of {@link #MODE_VARIABLE} and
+	 * {@link #MODE_FIXED_RATE}.
+	 */
+	public static final String SCROLL_MODE = "scrollMode";
+
+	/**
+	 * Scrolling mode in which the interval between steps depends on the
+	 * scrolling speed and every step moves by a whole number of pixels.
+	 */
+	public static final String MODE_VARIABLE = "variable";
+
+	/**
+	 * Scrolling mode in which steps are made with constant frequency (see
+	 * {@link #FRAME_RATE}) and the distance of each step depends on the
+	 * scrolling speed.
+	 */
+	public static final String MODE_FIXED_RATE = "fixedRate";
+
+	/**
+	 * Number of scrolling steps per second in {@link #MODE_FIXED_RATE} mode.
+	 */
+	public static final String FRAME_RATE = "frameRate";
+
+	/**
+	 * If true, scrolling faster than a threshold moves by whole lines and is
+	 * accelerated according to the length of the document.
+	 */
+	public static final String TURBO_SCROLLING = "turboScrolling";
+
+	/**
+	 * If true, after the middle button is released the widget keeps moving
+	 * with decaying speed until a key or a mouse button is pressed.
+	 */
+	public static final String MOMENTUM_SCROLLING = "momentumScrolling";
+
+	/**
+	 * If true, pressing the middle button with Ctrl (Command on Mac) starts
+	 * scrolling in which the vertical location of the cursor maps directly to
+	 * a position in the document.
+	 */
+	public static final String JUMP_SCROLLING = "jumpScrolling";
+
+	/**
+	 * If true, rulers of text editors are not repainted while scrolling fast.
+	 */
+	public static final String SUSPEND_DECORATIONS = "suspendDecorations";
+
+	/**
+	 * The profile of scrolling speed. One of
+	 * {@link AccelerationProfile#LINEAR},
+	 * {@link AccelerationProfile#QUADRATIC},
+	 * {@link AccelerationProfile#EXPONENTIAL} and
+	 * {@link AccelerationProfile#CUSTOM}.
+	 */
+	public static final String ACCELERATION_PROFILE = "accelerationProfile";
+
+	/**
+	 * Percentage by which speeds of the acceleration profile are multiplied.
+	 */
+	public static final String ACCELERATION_GAIN = "accelerationGain";
+
+	/**
+	 * Points of the {@link AccelerationProfile#CUSTOM} acceleration profile,
+	 * see {@link AccelerationProfile#parsePoints(String)}.
+	 */
+	public static final String ACCELERATION_POINTS = "accelerationPoints";
+
+	/**
+	 * Radius (in pixels) of the scroll tool on a display with 96 DPI. It's
+	 * also the distance within which the cursor doesn't cause scrolling.
+	 */
+	public static final String SCROLL_TOOL_RADIUS = "scrollToolRadius";
+
+	/**
+	 * The way the scroll tool is shown. One of {@link #INDICATOR_WINDOW} and
+	 * {@link #INDICATOR_OVERLAY}.
+	 */
+	public static final String INDICATOR_STYLE = "indicatorStyle";
+
+	/**
+	 * The scroll tool is shown in a separate window above the scrolled widget.
+	 */
+	public static final String INDICATOR_WINDOW = "window";
+
+	/**
+	 * The scroll tool is painted directly on the scrolled widget.
+	 */
+	public static final String INDICATOR_OVERLAY = "overlay";
+
+	/**
+	 * If true, editors are not searched for text widgets at startup. Instead,
+	 * any text widget is detected at the moment the middle mouse button is
+	 * pressed in it.
+	 */
+	public static final String DETECT_ON_CLICK = "detectOnClick";
+
+	/**
+	 * Comma separated class name prefixes of widgets (or their parents) that
+	 * can be scrolled in {@link #DETECT_ON_CLICK} mode. Empty means all
+	 * widgets.
+	 */
+	public static final String INCLUDED_WIDGETS = "includedWidgets";
+
+	/**
+	 * Comma separated class name prefixes of widgets (or their parents) that
+	 * can't be scrolled in {@link #DETECT_ON_CLICK} mode.
+	 */
+	public static final String EXCLUDED_WIDGETS = "excludedWidgets";
+
+	private PreferenceConstants() {
+	}
+}
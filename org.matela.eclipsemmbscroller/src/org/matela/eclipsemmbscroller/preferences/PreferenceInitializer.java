@@ -0,0 +1,53 @@
+/*******************************************************************************
+ * Copyright (c) 2009 Mateusz Matela.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Mateusz Matela - initial API and implementation
+ *******************************************************************************/
+package org.matela.eclipsemmbscroller.preferences;
+
+import org.eclipse.core.runtime.preferences.AbstractPreferenceInitializer;
+import org.eclipse.jface.preference.IPreferenceStore;
+import org.matela.eclipsemmbscroller.AccelerationProfile;
+import org.matela.eclipsemmbscroller.Activator;
+
+/**
+ * Class used to initialize default preference values.
+ * 
+ * @author Mateusz Matela
+ */
+public class PreferenceInitializer extends AbstractPreferenceInitializer {
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * org.eclipse.core.runtime.preferences.AbstractPreferenceInitializer#
+	 * initializeDefaultPreferences()
+	 */
+	public void initializeDefaultPreferences() {
+		IPreferenceStore store = Activator.getDefault().getPreferenceStore();
+		store.setDefault(PreferenceConstants.SCROLL_MODE,
+				PreferenceConstants.MODE_VARIABLE);
+		store.setDefault(PreferenceConstants.FRAME_RATE, 60);
+		store.setDefault(PreferenceConstants.TURBO_SCROLLING, false);
+		store.setDefault(PreferenceConstants.MOMENTUM_SCROLLING, false);
+		store.setDefault(PreferenceConstants.SUSPEND_DECORATIONS, false);
+		store.setDefault(PreferenceConstants.JUMP_SCROLLING, false);
+		store.setDefault(PreferenceConstants.ACCELERATION_PROFILE,
+				AccelerationProfile.QUADRATIC);
+		store.setDefault(PreferenceConstants.ACCELERATION_GAIN, 100);
+		store.setDefault(PreferenceConstants.ACCELERATION_POINTS,
+				"0:0, 50:100, 200:2000");
+		store.setDefault(PreferenceConstants.SCROLL_TOOL_RADIUS, 12);
+		store.setDefault(PreferenceConstants.INDICATOR_STYLE,
+				PreferenceConstants.INDICATOR_WINDOW);
+		store.setDefault(PreferenceConstants.DETECT_ON_CLICK, false);
+		store.setDefault(PreferenceConstants.INCLUDED_WIDGETS, "");
+		store.setDefault(PreferenceConstants.EXCLUDED_WIDGETS, "");
+	}
+}
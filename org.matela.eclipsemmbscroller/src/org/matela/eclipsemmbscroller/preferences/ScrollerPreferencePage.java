@@ -0,0 +1,151 @@
+/*******************************************************************************
+ * Copyright (c) 2009 Mateusz Matela.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Mateusz Matela - initial API and implementation
+ *******************************************************************************/
+package org.matela.eclipsemmbscroller.preferences;
+
+import org.eclipse.jface.preference.BooleanFieldEditor;
+import org.eclipse.jface.preference.ComboFieldEditor;
+import org.eclipse.jface.preference.FieldEditorPreferencePage;
+import org.eclipse.jface.preference.IntegerFieldEditor;
+import org.eclipse.jface.preference.RadioGroupFieldEditor;
+import org.eclipse.jface.preference.StringFieldEditor;
+import org.eclipse.swt.widgets.Composite;
+import org.eclipse.ui.IWorkbench;
+import org.eclipse.ui.IWorkbenchPreferencePage;
+import org.matela.eclipsemmbscroller.AccelerationProfile;
+import org.matela.eclipsemmbscroller.Activator;
+
+/**
+ * The preference page of middle button scrolling. Changes take effect at the
+ * next scrolling, except for switching detection of widgets on click, which
+ * requires restart. The included and excluded widget classes are applied to
+ * the next click.
+ * 
+ * @author Mateusz Matela
+ */
+public class ScrollerPreferencePage extends FieldEditorPreferencePage
+		implements IWorkbenchPreferencePage {
+
+	/**
+	 * Accepts only points that can be parsed by
+	 * {@link AccelerationProfile#parsePoints(String)}.
+	 */
+	private static class PointsFieldEditor extends StringFieldEditor {
+		public PointsFieldEditor(String name, String labelText,
+				Composite parent) {
+			super(name, labelText, parent);
+		}
+
+		protected boolean doCheckState() {
+			try {
+				AccelerationProfile.parsePoints(getStringValue());
+				return true;
+			} catch (IllegalArgumentException e) {
+				setErrorMessage(e.getMessage());
+				return false;
+			}
+		}
+	}
+
+	public ScrollerPreferencePage() {
+		super(GRID);
+		setPreferenceStore(Activator.getDefault().getPreferenceStore());
+		setDescription("Scrolling with the middle mouse button");
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * org.eclipse.jface.preference.FieldEditorPreferencePage#createFieldEditors
+	 * ()
+	 */
+	protected void createFieldEditors() {
+		addField(new ComboFieldEditor(PreferenceConstants.ACCELERATION_PROFILE,
+				"&Acceleration profile:", new String[][] {
+						{ "Linear", AccelerationProfile.LINEAR },
+						{ "Quadratic", AccelerationProfile.QUADRATIC },
+						{ "Exponential", AccelerationProfile.EXPONENTIAL },
+						{ "Custom", AccelerationProfile.CUSTOM } },
+				getFieldEditorParent()));
+
+		IntegerFieldEditor gain = new IntegerFieldEditor(
+				PreferenceConstants.ACCELERATION_GAIN,
+				"Speed &gain (percent):", getFieldEditorParent());
+		gain.setValidRange(10, 1000);
+		addField(gain);
+
+		addField(new PointsFieldEditor(PreferenceConstants.ACCELERATION_POINTS,
+				"Custom &points (distance:pixels per second):",
+				getFieldEditorParent()));
+
+		IntegerFieldEditor radius = new IntegerFieldEditor(
+				PreferenceConstants.SCROLL_TOOL_RADIUS,
+				"Scroll tool &radius (pixels at 96 DPI):",
+				getFieldEditorParent());
+		radius.setValidRange(4, 64);
+		addField(radius);
+
+		addField(new RadioGroupFieldEditor(PreferenceConstants.SCROLL_MODE,
+				"Scrolling &mode", 1, new String[][] {
+						{ "Steps of one pixel", PreferenceConstants.MODE_VARIABLE },
+						{ "Constant frame rate",
+								PreferenceConstants.MODE_FIXED_RATE } },
+				getFieldEditorParent(), true));
+
+		IntegerFieldEditor frameRate = new IntegerFieldEditor(
+				PreferenceConstants.FRAME_RATE, "&Frames per second:",
+				getFieldEditorParent());
+		frameRate.setValidRange(10, 200);
+		addField(frameRate);
+
+		addField(new BooleanFieldEditor(PreferenceConstants.TURBO_SCROLLING,
+				"&Turbo scrolling by whole lines in long documents",
+				getFieldEditorParent()));
+
+		addField(new BooleanFieldEditor(
+				PreferenceConstants.MOMENTUM_SCROLLING,
+				"Keep moving after the button is r&eleased",
+				getFieldEditorParent()));
+
+		addField(new BooleanFieldEditor(PreferenceConstants.JUMP_SCROLLING,
+				"Ctrl+middle button &jumps to a proportional position",
+				getFieldEditorParent()));
+
+		addField(new BooleanFieldEditor(
+				PreferenceConstants.SUSPEND_DECORATIONS,
+				"&Freeze rulers while scrolling fast",
+				getFieldEditorParent()));
+
+		addField(new RadioGroupFieldEditor(PreferenceConstants.INDICATOR_STYLE,
+				"Scroll tool &indicator", 1, new String[][] {
+						{ "Separate window", PreferenceConstants.INDICATOR_WINDOW },
+						{ "Painted on the widget",
+								PreferenceConstants.INDICATOR_OVERLAY } },
+				getFieldEditorParent(), true));
+
+		addField(new BooleanFieldEditor(PreferenceConstants.DETECT_ON_CLICK,
+				"&Detect text widgets on click (requires restart)",
+				getFieldEditorParent()));
+		addField(new StringFieldEditor(PreferenceConstants.INCLUDED_WIDGETS,
+				"In&cluded widget classes:", getFieldEditorParent()));
+		addField(new StringFieldEditor(PreferenceConstants.EXCLUDED_WIDGETS,
+				"E&xcluded widget classes:", getFieldEditorParent()));
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * org.eclipse.ui.IWorkbenchPreferencePage#init(org.eclipse.ui.IWorkbench)
+	 */
+	public void init(IWorkbench workbench) {
+	}
+}